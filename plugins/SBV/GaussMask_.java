@@ -2,11 +2,14 @@ import at.sschmid.hcc.sbv1.image.ConvolutionFilter;
 import at.sschmid.hcc.sbv1.image.Image;
 import at.sschmid.hcc.sbv1.image.imagej.AbstractUserInputPlugIn;
 import at.sschmid.hcc.sbv1.image.imagej.ImageJUtility;
+import ij.IJ;
 import ij.gui.GenericDialog;
 
-public final class GaussMask_ extends AbstractUserInputPlugIn<Integer> {
+public final class GaussMask_ extends AbstractUserInputPlugIn<GaussMask_.Input> {
   
   private static final int defaultRadius = 4;
+  private static final String MODE_KERNEL = "Kernel";
+  private static final String MODE_RECURSIVE = "Recursive (IIR)";
   
   @Override
   protected void process(final Image image) {
@@ -16,31 +19,59 @@ public final class GaussMask_ extends AbstractUserInputPlugIn<Integer> {
      * > 'Radius' means the radius of decay to exp(-0.5) ~ 61%, i.e. the standard deviation sigma of the Gaussian
      *   (this is the same as in Photoshop, ...).
      */
-    final double tgtSigma = input * Math.exp(-0.5);
-    final int kernelSize = 2 * input + 1;
+    final int radius = input.radius;
+    final double tgtSigma = radius * Math.exp(-0.5);
+    final int kernelSize = 2 * radius + 1;
     
     double[][] inDataArrDbl = ImageJUtility.convertToDoubleArr2D(image);
     
-    double[][] kernel = ConvolutionFilter.GetGaussMask(input, tgtSigma, true);
-    double[][] kernelImg = ConvolutionFilter.maskAsImage(kernel, input);
-    double[][] resultImg = ConvolutionFilter.ConvolveDoubleNorm(inDataArrDbl, image.width, image.height, kernel, input);
+    if (input.recursive && tgtSigma < ConvolutionFilter.MIN_RECURSIVE_SIGMA) {
+      IJ.log(String.format("Sigma %s is too small for the recursive mode, using a kernel instead", tgtSigma));
+    } else if (input.recursive) {
+      double[][] resultImg = ConvolutionFilter.ConvolveGaussRecursive(inDataArrDbl, image.width, image.height, tgtSigma);
+      ImageJUtility.showNewImage(resultImg, image.width, image.height,
+          String.format("%s - recursive s=%s", pluginName, tgtSigma));
+      return;
+    }
+    
+    double[][] kernel = ConvolutionFilter.GetGaussMask(radius, tgtSigma, true);
+    double[][] kernelImg = ConvolutionFilter.maskAsImage(kernel, radius);
+    double[][] resultImg = ConvolutionFilter.ConvolveDoubleNorm(inDataArrDbl, image.width, image.height, kernel, radius);
     
     ImageJUtility.showNewImage(resultImg, image.width, image.height,
-        String.format("%s - r=%d, s=%s", pluginName, input, tgtSigma));
+        String.format("%s - r=%d, s=%s", pluginName, radius, tgtSigma));
     ImageJUtility.showNewImage(kernelImg,
         kernelSize,
         kernelSize,
-        String.format("%s - Kernel r=%d s=%s", pluginName, input, tgtSigma));
+        String.format("%s - Kernel r=%d s=%s", pluginName, radius, tgtSigma));
   }
   
   @Override
   protected void setupDialog(final GenericDialog dialog) {
     dialog.addNumericField("Radius", defaultRadius, 0);
+    dialog.addChoice("Mode", new String[] { MODE_KERNEL, MODE_RECURSIVE }, MODE_KERNEL);
   }
   
   @Override
-  protected Integer getInput(final GenericDialog dialog) {
-    return (int) dialog.getNextNumber();
+  protected Input getInput(final GenericDialog dialog) {
+    return new Input((int) dialog.getNextNumber(), MODE_RECURSIVE.equals(dialog.getNextChoice()));
+  }
+  
+  static final class Input {
+    
+    private final int radius;
+    private final boolean recursive;
+    
+    Input(final int radius, final boolean recursive) {
+      this.radius = radius;
+      this.recursive = recursive;
+    }
+    
+    @Override
+    public String toString() {
+      return String.format("Gauss {\n  radius=%d,\n  mode=%s\n}", radius, recursive ? MODE_RECURSIVE : MODE_KERNEL);
+    }
+    
   }
   
 }
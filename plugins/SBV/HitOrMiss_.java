@@ -1,36 +1,34 @@
 import at.sschmid.hcc.sbv1.image.Image;
 import at.sschmid.hcc.sbv1.image.imagej.AbstractUserInputPlugIn;
 import at.sschmid.hcc.sbv1.image.segmentation.BinaryThreshold;
+import at.sschmid.hcc.sbv1.image.segmentation.Hits;
 import at.sschmid.hcc.sbv1.image.segmentation.Neighbour;
 import at.sschmid.hcc.sbv1.image.segmentation.Segmentation;
-import at.sschmid.hcc.sbv1.utility.Point;
 import ij.gui.GenericDialog;
 
-import java.util.Collection;
-
 public final class HitOrMiss_ extends AbstractUserInputPlugIn<HitOrMiss_.Input> {
   
   @Override
   protected void process(final Image image) {
     final int[][] structure = getStructure();
     final Segmentation segmentation = image.segmentation();
-    final Image hits = segmentation.hitOrMiss(structure, input.quality);
-  
-    final Collection<Point> hitOrMissPoints = segmentation.hitOrMissPoints(structure, input.quality);
     final BinaryThreshold bt = new BinaryThreshold(1, 0, 255);
-    final Image labelledHits = segmentation.regionLabelling(hitOrMissPoints, Neighbour.N8, bt);
     
-    addResult(hits, String.format("%s - hits (%dx%d)", pluginName, input.rectWidth, input.rectHeight));
+    // scan once, the hits are used for the image and as seeds for the labelling
+    final Hits hits = segmentation.hitOrMissHits(structure, input.quality);
+    final Image labelledHits = segmentation.regionLabelling(hits.toPoints(), Neighbour.N8, bt);
+    
+    addResult(hits.toImage(image.maxColor),
+        String.format("%s - hits (%dx%d)", pluginName, input.rectWidth, input.rectHeight));
     addResult(labelledHits,
         String.format("%s - detected objects (%dx%d)", pluginName, input.rectWidth, input.rectHeight));
   
     if (input.includeAntiAlias) {
-      final Image hitsAA = segmentation.hitOrMissAntiAlias(structure, input.quality);
-    
-      final Collection<Point> hitOrMissPointsAA = segmentation.hitOrMissAntiAliasPoints(structure, input.quality);
-      final Image labelledHitsAA = segmentation.regionLabelling(hitOrMissPointsAA, Neighbour.N8, bt);
+      final Hits hitsAA = segmentation.hitOrMissAntiAliasHits(structure, input.quality);
+      final Image labelledHitsAA = segmentation.regionLabelling(hitsAA.toPoints(), Neighbour.N8, bt);
     
-      addResult(hitsAA, String.format("%s - anti aliased hits (%dx%d)", pluginName, input.rectWidth, input.rectHeight));
+      addResult(hitsAA.toImage(image.maxColor),
+          String.format("%s - anti aliased hits (%dx%d)", pluginName, input.rectWidth, input.rectHeight));
       addResult(labelledHitsAA,
           String.format("%s - anti aliased detected objects (%dx%d)", pluginName, input.rectWidth, input.rectHeight));
     }
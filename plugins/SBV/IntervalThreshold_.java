@@ -27,10 +27,10 @@ public final class IntervalThreshold_ extends AbstractUserInputPlugIn<IntervalTh
   private Image calcThresh(final Image image) {
     final Image result = new Image(image).withName(String.format("Interval Threshold %s", input.toString()));
     
-    for (int x = 0; x < image.width; x++) {
-      for (int y = 0; y < image.height; y++) {
-        final int currVal = image.data[x][y];
-        result.data[x][y] = currVal >= input.lower && currVal <= input.upper ? FG_VAL : BG_VAL;
+    for (int y = 0; y < image.height; y++) {
+      for (int x = 0; x < image.width; x++) {
+        final int currVal = image.get(x, y);
+        result.set(x, y, currVal >= input.lower && currVal <= input.upper ? FG_VAL : BG_VAL);
       }
     }
     
@@ -1,7 +1,5 @@
-import at.sschmid.hcc.sbv1.image.ConvolutionFilter;
 import at.sschmid.hcc.sbv1.image.Image;
 import at.sschmid.hcc.sbv1.image.imagej.AbstractUserInputPlugIn;
-import at.sschmid.hcc.sbv1.image.imagej.ImageJUtility;
 import ij.gui.GenericDialog;
 
 public final class MeanMask_ extends AbstractUserInputPlugIn<Integer> {
@@ -10,18 +8,7 @@ public final class MeanMask_ extends AbstractUserInputPlugIn<Integer> {
   
   @Override
   protected void process(final Image image) {
-    final double[][] inDataArrDbl = ImageJUtility.convertToDoubleArr2D(image);
-    final double[][] kernel = ConvolutionFilter.GetMeanMask(input);
-    final double[][] resultImg = ConvolutionFilter.ConvolveDoubleNorm(inDataArrDbl,
-        image.width,
-        image.height,
-        kernel,
-        input);
-    
-    ImageJUtility.showNewImage(resultImg,
-        image.width,
-        image.height,
-        String.format("%s with r=%d", pluginName, input));
+    addResult(image.integralImage().mean(input), String.format("%s with r=%d", pluginName, input));
   }
   
   @Override
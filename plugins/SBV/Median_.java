@@ -2,33 +2,91 @@ import at.sschmid.hcc.sbv1.image.Image;
 import at.sschmid.hcc.sbv1.image.imagej.AbstractUserInputPlugIn;
 import at.sschmid.hcc.sbv1.utility.CSV;
 import ij.gui.GenericDialog;
+import ij.gui.Roi;
+import ij.io.DirectoryChooser;
+import ij.io.FileInfo;
 
+import java.awt.*;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public final class Median_ extends AbstractUserInputPlugIn<Integer> {
+public final class Median_ extends AbstractUserInputPlugIn<Median_.Input> {
   
   private static final Logger LOGGER = Logger.getLogger(Median_.class.getName());
   private static final int defaultRadius = 4;
+  private static final int defaultSampling = 100;
   
   @Override
   public void process(final Image image) {
-    try (final CSV csv = new CSV("median", "UE01\\files")) {
-      csv.open();
+    final long start = System.currentTimeMillis();
+    final Image resultImg = image.median(input.radius).getResult();
+    LOGGER.info(String.format("Median-Filter %ss", (System.currentTimeMillis() - start) / 1000d));
+    
+    addResult(resultImg, pluginName);
+    addResult(image.checkerboard(resultImg));
+    
+    if (input.diagnostics) {
+      final Roi roi = imagePlus.getRoi();
+      final Rectangle area = roi != null
+          ? roi.getBounds().intersection(new Rectangle(image.width, image.height))
+          : new Rectangle(image.width, image.height);
       
-      final Image resultImg = medianFilter(image, input, csv);
-      addResult(resultImg, pluginName);
-      addResult(image.checkerboard(resultImg));
+      final String directory = diagnosticsDirectory();
+      if (directory == null) {
+        LOGGER.info("No directory chosen, median diagnostics are skipped");
+        return;
+      }
       
-    } catch (IOException e) {
-      e.printStackTrace();
+      // diagnostics never delay the filter result, they are sampled and written in the background. The image wraps
+      // the live ImageJ pixels, so the task works on a snapshot that later edits cannot change.
+      final Image snapshot = new Image(image);
+      CompletableFuture.runAsync(() -> writeDiagnostics(snapshot, resultImg, area, directory))
+          .exceptionally(e -> {
+            LOGGER.log(Level.WARNING, "Could not write median diagnostics", e);
+            return null;
+          });
     }
   }
   
-  private Image medianFilter(final Image image, final int radius, final CSV csv) throws IOException {
-    final long start = System.currentTimeMillis();
-    final Image resultImg = new Image(image.width, image.height);
+  @Override
+  protected void setupDialog(final GenericDialog dialog) {
+    dialog.addNumericField("Radius", defaultRadius, 0);
+    dialog.addCheckbox("Write diagnostics (CSV, limited to ROI)", false);
+    dialog.addNumericField("Diagnostics for every n-th pixel", defaultSampling, 0);
+  }
+  
+  @Override
+  protected Input getInput(final GenericDialog dialog) {
+    return new Input((int) dialog.getNextNumber(), dialog.getNextBoolean(), (int) dialog.getNextNumber());
+  }
+  
+  /**
+   * @return the directory of the image file, or one chosen by the user for images that were not loaded from a file;
+   * null if the user cancelled
+   */
+  private String diagnosticsDirectory() {
+    final FileInfo fileInfo = imagePlus.getOriginalFileInfo();
+    final String directory = fileInfo != null && fileInfo.directory != null && !fileInfo.directory.isEmpty()
+        ? fileInfo.directory
+        : new DirectoryChooser("Directory for median diagnostics").getDirectory();
+    if (directory == null) {
+      return null;
+    }
+    
+    return directory.endsWith(File.separator) ? directory : directory + File.separator;
+  }
+  
+  private void writeDiagnostics(final Image image,
+                                final Image resultImg,
+                                final Rectangle area,
+                                final String directory) {
+    final int radius = input.radius;
+    final int sampling = Math.max(input.sampling, 1);
     final int maskWidth = 2 * radius + 1;
     final int maskSize = maskWidth * maskWidth;
     
@@ -41,76 +99,91 @@ public final class Median_ extends AbstractUserInputPlugIn<Integer> {
         .append(')')
         .toString();
     
-    csv.addRow(csv.row()
-        .cell("Pixel")
-        .cell("Old Color")
-        .cell("New Color")
-        .cell("Avg")
-        .cell("Std-Dev")
-        .cell("Min")
-        .cell("Max")
-        .cell("Min Delta")
-        .cell("Max Delta")
-        .empty()
-        .cell(maskLabel));
-    
-    int[] mask;
-    for (int x = 0; x < image.width; x++) {
-      for (int y = 0; y < image.height; y++) {
-        int maskIdx = -1;
-        mask = new int[maskSize];
-        for (int xOffset = -radius; xOffset <= radius; xOffset++) {
-          for (int yOffset = -radius; yOffset <= radius; yOffset++) {
-            int nbx = x + xOffset;
-            int nby = y + yOffset;
-            
-            if (nbx >= 0 && nbx < image.width && nby >= 0 && nby < image.height) {
-              mask[++maskIdx] = image.data[nbx][nby];
+    final CSV.Config config = CSV.getDefaultConfig()
+        .withOutputDirectory(directory)
+        .withDirectorySeparator(File.separator);
+    try (final CSV csv = new CSV("median", null, config)) {
+      csv.open();
+      csv.addRow(csv.row()
+          .cell("Pixel")
+          .cell("Old Color")
+          .cell("New Color")
+          .cell("Avg")
+          .cell("Std-Dev")
+          .cell("Min")
+          .cell("Max")
+          .cell("Min Delta")
+          .cell("Max Delta")
+          .empty()
+          .cell(maskLabel));
+      
+      final int[] mask = new int[maskSize];
+      int pixel = 0;
+      for (int y = area.y; y < area.y + area.height; y++) {
+        for (int x = area.x; x < area.x + area.width; x++) {
+          if (pixel++ % sampling != 0) {
+            continue;
+          }
+          
+          int count = 0;
+          for (int nbx = x - radius; nbx <= x + radius; nbx++) {
+            for (int nby = y - radius; nby <= y + radius; nby++) {
+              if (nbx >= 0 && nbx < image.width && nby >= 0 && nby < image.height) {
+                mask[count++] = image.get(nbx, nby);
+              }
             }
           }
+          
+          Arrays.sort(mask, 0, count);
+          final int[] values = Arrays.copyOf(mask, count);
+          final double avg = Arrays.stream(values).average().orElse(0);
+          final double sumOfAbsDiffs = Arrays.stream(values).mapToDouble(n -> Math.pow(n - avg, 2)).sum();
+          final double stdDev = count > 1 ? Math.sqrt(sumOfAbsDiffs / (count - 1)) : 0;
+          
+          csv.addRow(csv.row()
+              .cell(new StringBuilder("[").append(x)
+                  .append("][")
+                  .append(y)
+                  .append("]")
+                  .toString())
+              .cell(image.get(x, y))
+              .cell(resultImg.get(x, y))
+              .floatingPointCell(avg, 3)
+              .floatingPointCell(stdDev, 3)
+              .cell(values[0])
+              .cell(values[count - 1])
+              .cell('-')
+              .cell('-')
+              .empty()
+              .cells(Arrays.stream(values)
+                  .distinct()
+                  .toArray()));
         }
-        
-        Arrays.sort(mask);
-        resultImg.data[x][y] = mask[maskIdx / 2];
-        
-        final double avg = Arrays.stream(mask).average().orElse(0);
-        final double sumOfAbsDiffs = Arrays.stream(mask).mapToDouble(n -> Math.pow(n - avg, 2)).sum();
-        final double stdDev = Math.sqrt(sumOfAbsDiffs / (mask.length - 1));
-        
-        csv.addRow(csv.row()
-            .cell(new StringBuilder("[").append(x)
-                .append("][")
-                .append(y)
-                .append("]")
-                .toString())
-            .cell(image.data[x][y])
-            .cell(resultImg.data[x][y])
-            .floatingPointCell(avg, 3)
-            .floatingPointCell(stdDev, 3)
-            .cell(mask[0])
-            .cell(mask[mask.length - 1])
-            .cell('-')
-            .cell('-')
-            .empty()
-            .cells(Arrays.stream(mask)
-                .distinct()
-                .toArray()));
       }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
-    
-    LOGGER.info(String.format("Median-Filter %ss", (System.currentTimeMillis() - start) / 1000d));
-    
-    return resultImg;
-  }
-  
-  @Override
-  protected void setupDialog(final GenericDialog dialog) {
-    dialog.addNumericField("Radius", defaultRadius, 0);
   }
   
-  @Override
-  protected Integer getInput(final GenericDialog dialog) {
-    return (int) dialog.getNextNumber();
+  static final class Input {
+    
+    private final int radius;
+    private final boolean diagnostics;
+    private final int sampling;
+    
+    Input(final int radius, final boolean diagnostics, final int sampling) {
+      this.radius = radius;
+      this.diagnostics = diagnostics;
+      this.sampling = sampling;
+    }
+    
+    @Override
+    public String toString() {
+      return diagnostics
+          ? String.format("Median {\n  radius=%d,\n  diagnostics for every %d. pixel\n}", radius, sampling)
+          : String.format("Median {\n  radius=%d\n}", radius);
+    }
+    
   }
   
 }
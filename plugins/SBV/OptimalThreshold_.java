@@ -1,15 +1,19 @@
 import at.sschmid.hcc.sbv1.image.Histogram;
 import at.sschmid.hcc.sbv1.image.Image;
 import at.sschmid.hcc.sbv1.image.imagej.AbstractUserInputPlugIn;
+import at.sschmid.hcc.sbv1.image.segmentation.LocalThreshold;
 import at.sschmid.hcc.sbv1.image.segmentation.OptimalThreshold;
+import at.sschmid.hcc.sbv1.image.segmentation.ThresholdMethod;
 import ij.IJ;
 import ij.gui.GenericDialog;
 
+import java.util.Arrays;
+
 public final class OptimalThreshold_ extends AbstractUserInputPlugIn<OptimalThreshold_.Input> {
   
   @Override
   protected void process(final Image image) {
-    final OptimalThreshold optimalThreshold = image.histogram().optimalThreshold(input.version);
+    final OptimalThreshold optimalThreshold = image.histogram().optimalThreshold(input.method);
     final boolean isAll = "All".equals(input.whichOne);
     if (isAll || "Global".equals(input.whichOne)) {
       global(image, optimalThreshold);
@@ -22,8 +26,11 @@ public final class OptimalThreshold_ extends AbstractUserInputPlugIn<OptimalThre
   
   @Override
   protected void setupDialog(final GenericDialog dialog) {
-    dialog.addChoice("Version", new String[] { "v1", "v2" }, "v2");
+    dialog.addChoice("Method",
+        Arrays.stream(ThresholdMethod.values()).map(Enum::toString).toArray(String[]::new),
+        ThresholdMethod.Isodata.toString());
     dialog.addChoice("Which?", new String[] { "All", "Global", "Local" }, "All");
+    dialog.addChoice("Local mode", new String[] { "Segments", "Interpolated", "Niblack", "Sauvola" }, "Segments");
     final String[] sizeChoices = new String[] { "9", "21", "51", "101", "201" };
     final String defaultSizeChoice = "51";
     dialog.addChoice("Segment width", sizeChoices, defaultSizeChoice);
@@ -32,7 +39,8 @@ public final class OptimalThreshold_ extends AbstractUserInputPlugIn<OptimalThre
   
   @Override
   protected Input getInput(final GenericDialog dialog) {
-    return new Input(dialog.getNextChoiceIndex() + 1,
+    return new Input(ThresholdMethod.values()[dialog.getNextChoiceIndex()],
+        dialog.getNextChoice(),
         dialog.getNextChoice(),
         Integer.valueOf(dialog.getNextChoice()),
         Integer.valueOf(dialog.getNextChoice()));
@@ -56,7 +64,7 @@ public final class OptimalThreshold_ extends AbstractUserInputPlugIn<OptimalThre
   }
   
   private void local(final Image image, final OptimalThreshold optimalThreshold) {
-    final Image localMask = optimalThreshold.localMask(input.segmentWidth, input.segmentHeight);
+    final Image localMask = localMask(image, optimalThreshold);
     final Image localObjects = image.calculation(localMask).and();
     final Image localDiff = image.calculation(localObjects).difference();
     
@@ -70,29 +78,53 @@ public final class OptimalThreshold_ extends AbstractUserInputPlugIn<OptimalThre
         diffHistogram.getMaxColor()));
   }
   
+  private Image localMask(final Image image, final OptimalThreshold optimalThreshold) {
+    // the windows of Niblack and Sauvola are as large as the segments
+    final int radius = Math.min(input.segmentWidth, input.segmentHeight) / 2;
+    switch (input.localMode) {
+      case "Interpolated":
+        return optimalThreshold.localInterpolatedMask(input.segmentWidth, input.segmentHeight);
+      case "Niblack":
+        return image.localThreshold().niblack(radius, LocalThreshold.DEFAULT_NIBLACK_K);
+      case "Sauvola":
+        return image.localThreshold()
+            .sauvola(radius, LocalThreshold.DEFAULT_SAUVOLA_K, LocalThreshold.DEFAULT_SAUVOLA_RANGE);
+      default:
+        return optimalThreshold.localMask(input.segmentWidth, input.segmentHeight);
+    }
+  }
+  
   static final class Input {
   
-    private final int version;
+    private final ThresholdMethod method;
     private final String whichOne;
+    private final String localMode;
     private final int segmentWidth;
     private final int segmentHeight;
   
-    private Input(final int version, final String whichOne, final int segmentWidth, final int segmentHeight) {
-      this.version = version;
+    private Input(final ThresholdMethod method,
+                  final String whichOne,
+                  final String localMode,
+                  final int segmentWidth,
+                  final int segmentHeight) {
+      this.method = method;
       this.whichOne = whichOne;
+      this.localMode = localMode;
       this.segmentWidth = segmentWidth;
       this.segmentHeight = segmentHeight;
     }
     
     @Override
     public String toString() {
-      final StringBuilder builder = new StringBuilder("Optimal Threshold (v")
-          .append(version)
+      final StringBuilder builder = new StringBuilder("Optimal Threshold (")
+          .append(method)
           .append(") {\n  whichOne=")
           .append(whichOne);
   
       if ("All".equals(whichOne) || "Local".equals(whichOne)) {
-        builder.append(",\n  segmentWidth=").append(segmentWidth).append(",\n  segmentHeight=").append(segmentHeight);
+        builder.append(",\n  localMode=")
+            .append(localMode)
+            .append(",\n  segmentWidth=").append(segmentWidth).append(",\n  segmentHeight=").append(segmentHeight);
       }
   
       return builder.append("\n}").toString();
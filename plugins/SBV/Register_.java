@@ -3,6 +3,7 @@ import at.sschmid.hcc.sbv1.image.SplitImage;
 import at.sschmid.hcc.sbv1.image.imagej.AbstractUserInputPlugIn;
 import at.sschmid.hcc.sbv1.image.registration.MatchMetric;
 import at.sschmid.hcc.sbv1.image.registration.MatchMetricType;
+import at.sschmid.hcc.sbv1.image.registration.Optimizer;
 import at.sschmid.hcc.sbv1.image.registration.Registration;
 import at.sschmid.hcc.sbv1.image.resampling.Interpolation;
 import at.sschmid.hcc.sbv1.image.resampling.Transformation;
@@ -26,6 +27,9 @@ public final class Register_ extends AbstractUserInputPlugIn<Register_.Input> {
   private static final double DEFAULT_STEP_WIDTH_ROT = DEFAULT_STEP_WIDTH_TRANS;
   private static final int DEFAULT_OPTIMIZATION_RUNS = 5;
   private static final double DEFAULT_SCALE_PER_RUN = 0.9d;
+  private static final int DEFAULT_PYRAMID_LEVELS = 1;
+  private static final String[] OPTIMIZERS = { "Grid search", "Nelder-Mead", "Powell", "Hill climber" };
+  private static final int DEFAULT_MAX_EVALUATIONS = 500;
   
   @Override
   public void process(final Image image) {
@@ -66,6 +70,9 @@ public final class Register_ extends AbstractUserInputPlugIn<Register_.Input> {
     dialog.addNumericField("Step width (rotation)", DEFAULT_STEP_WIDTH_ROT, 3);
     dialog.addNumericField("Max optimization runs", DEFAULT_OPTIMIZATION_RUNS, 0);
     dialog.addNumericField("Scale per run", DEFAULT_SCALE_PER_RUN, 1);
+    dialog.addNumericField("Pyramid levels (1 = off)", DEFAULT_PYRAMID_LEVELS, 0);
+    dialog.addChoice("Optimizer", OPTIMIZERS, OPTIMIZERS[0]);
+    dialog.addNumericField("Max evaluations (optimizers)", DEFAULT_MAX_EVALUATIONS, 0);
   }
   
   @Override
@@ -81,7 +88,10 @@ public final class Register_ extends AbstractUserInputPlugIn<Register_.Input> {
         dialog.getNextNumber(),
         dialog.getNextNumber(),
         (int) dialog.getNextNumber(),
-        dialog.getNextNumber());
+        dialog.getNextNumber(),
+        (int) dialog.getNextNumber(),
+        dialog.getNextChoiceIndex(),
+        (int) dialog.getNextNumber());
   }
   
   private void registration(final Image image1, final Image image2) {
@@ -99,6 +109,9 @@ public final class Register_ extends AbstractUserInputPlugIn<Register_.Input> {
         .searchRadiusRotation(input.searchRadiusRotation)
         .maxOptimizationRuns(input.maxOptimizationRuns)
         .scalePerRun(input.scalePerRun)
+        .pyramidLevels(input.pyramidLevels)
+        .optimizer(input.getOptimizer())
+        .maxEvaluations(input.maxEvaluations)
         .build();
     
     final long start = System.currentTimeMillis();
@@ -141,6 +154,9 @@ public final class Register_ extends AbstractUserInputPlugIn<Register_.Input> {
     private final double stepWidthRotation;
     private final int maxOptimizationRuns;
     private final double scalePerRun;
+    private final int pyramidLevels;
+    private final int optimizer;
+    private final int maxEvaluations;
   
     private Transformations transformations;
     
@@ -155,7 +171,10 @@ public final class Register_ extends AbstractUserInputPlugIn<Register_.Input> {
           final double stepWidthTranslation,
           final double stepWidthRotation,
           final int maxOptimizationRuns,
-          final double scalePerRun) {
+          final double scalePerRun,
+          final int pyramidLevels,
+          final int optimizer,
+          final int maxEvaluations) {
       this.splitImage = splitImage;
       this.translationX = translationX;
       this.translationY = translationY;
@@ -168,6 +187,9 @@ public final class Register_ extends AbstractUserInputPlugIn<Register_.Input> {
       this.stepWidthRotation = stepWidthRotation;
       this.maxOptimizationRuns = maxOptimizationRuns;
       this.scalePerRun = scalePerRun;
+      this.pyramidLevels = pyramidLevels;
+      this.optimizer = optimizer;
+      this.maxEvaluations = maxEvaluations;
     }
     
     @Override
@@ -189,10 +211,29 @@ public final class Register_ extends AbstractUserInputPlugIn<Register_.Input> {
           .append(maxOptimizationRuns)
           .append(",\n   scalePerRun=")
           .append(scalePerRun)
+          .append(",\n   pyramidLevels=")
+          .append(pyramidLevels)
+          .append(",\n   optimizer=")
+          .append(OPTIMIZERS[optimizer])
+          .append(",\n   maxEvaluations=")
+          .append(maxEvaluations)
           .append("\n}")
           .toString();
     }
     
+    private Optimizer getOptimizer() {
+      switch (optimizer) {
+        case 1:
+          return Optimizer.nelderMead();
+        case 2:
+          return Optimizer.powell();
+        case 3:
+          return Optimizer.hillClimber();
+        default:
+          return null;
+      }
+    }
+    
     private Transformations getTransformations() {
       if (transformations == null) {
         transformations = rotateFirst
@@ -0,0 +1,116 @@
+package at.sschmid.hcc.sbv1.image;
+
+import java.util.Arrays;
+
+/**
+ * 8 bit pixels. The backing array may be shared with another owner (see {@link #share()} and ImageJ wrappers), it is
+ * then copied before the first write. Copying is thread-safe: tiles of the TileScheduler may write to a shared
+ * buffer concurrently, exactly one of them copies the array and all of them write to that copy. {@link #share()}
+ * itself must not run concurrently with writes.
+ */
+public final class BytePixelBuffer extends PixelBuffer {
+  
+  private byte[] data;
+  // written after data, so a thread that sees false also sees the detached array
+  private volatile boolean shared;
+  
+  BytePixelBuffer(final int width, final int height) {
+    this(new byte[width * height], width, height, width, false);
+  }
+  
+  BytePixelBuffer(final byte[] data, final int width, final int height, final int stride, final boolean shared) {
+    super(width, height, stride);
+    if (data.length < (height - 1) * stride + width) {
+      throw new IllegalArgumentException("Backing array is too small for the given dimensions");
+    }
+    
+    this.data = data;
+    this.shared = shared;
+  }
+  
+  /**
+   * @return the backing array for reading and writing. A shared array is copied first, so writes never leak into
+   * the array's other owner.
+   */
+  public byte[] array() {
+    if (shared) {
+      detach(true);
+    }
+    
+    return data;
+  }
+  
+  /**
+   * Hands out the backing array without copying, e.g. to {@code ByteProcessor.setPixels}. The caller must not write
+   * to it; subsequent writes to this buffer will copy the array first.
+   */
+  public synchronized byte[] share() {
+    shared = true;
+    return data;
+  }
+  
+  public boolean isShared() {
+    return shared;
+  }
+  
+  @Override
+  public int get(final int index) {
+    return data[index] & 0xFF;
+  }
+  
+  @Override
+  public void set(final int index, final int value) {
+    if (shared) {
+      detach(true);
+    }
+    
+    data[index] = (byte) value;
+  }
+  
+  @Override
+  public void fill(final int value) {
+    if (shared) {
+      detach(false);
+    }
+    
+    Arrays.fill(data, (byte) value);
+  }
+  
+  @Override
+  public PixelBuffer createEmpty() {
+    return new BytePixelBuffer(width, height);
+  }
+  
+  @Override
+  public PixelBuffer createEmpty(final int width, final int height) {
+    return new BytePixelBuffer(width, height);
+  }
+  
+  @Override
+  public PixelBuffer copy() {
+    final byte[] copy = new byte[width * height];
+    if (stride == width) {
+      System.arraycopy(data, 0, copy, 0, copy.length);
+    } else {
+      for (int y = 0; y < height; y++) {
+        System.arraycopy(data, y * stride, copy, y * width, width);
+      }
+    }
+    
+    return new BytePixelBuffer(copy, width, height, width, false);
+  }
+  
+  @Override
+  public int bytesPerPixel() {
+    return 1;
+  }
+  
+  private synchronized void detach(final boolean keepContent) {
+    // another thread may have detached while this one was waiting
+    if (shared) {
+      data = keepContent ? data.clone() : new byte[data.length];
+      shared = false;
+    }
+  }
+  
+}
@@ -56,19 +56,19 @@ public final class Checkerboard implements ImageGenerator {
     
     int currentSegWidth = 0;
     int currentSegHeight = 0;
-    int[][] currentImg = image1.data;
+    Image currentImg = image1;
     for (int x = 0; x < result.width; x++) {
       for (int y = 0; y < result.height; y++) {
-        result.data[x][y] = currentImg[x][y];
+        result.set(x, y, currentImg.get(x, y));
         if (++currentSegHeight >= segmentHeight) {
           currentSegHeight = 0;
-          currentImg = currentImg == image1.data ? image2.data : image1.data;
+          currentImg = currentImg == image1 ? image2 : image1;
         }
       }
       
       if (++currentSegWidth >= segmentWidth) {
         currentSegWidth = 0;
-        currentImg = currentImg == image1.data ? image2.data : image1.data;
+        currentImg = currentImg == image1 ? image2 : image1;
       }
     }
     
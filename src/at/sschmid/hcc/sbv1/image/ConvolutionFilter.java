@@ -1,11 +1,21 @@
 package at.sschmid.hcc.sbv1.image;
 
 import at.sschmid.hcc.sbv1.utility.CSV;
+import at.sschmid.hcc.sbv1.utility.TileScheduler;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class ConvolutionFilter {
   
+  public static final double MIN_RECURSIVE_SIGMA = 0.5d;
+  
+  private static final double SEPARABILITY_TOLERANCE = 1e-9;
+  private static final int RECURSIVE_BAND_WIDTH = 64;
+  private static final Map<GaussMaskKey, double[][]> GAUSS_MASK_CACHE = new ConcurrentHashMap<>();
+  
   public static double[][] ConvolveDoubleNorm(double[][] inputImg,
                                               int width,
                                               int height,
@@ -25,68 +35,323 @@ public final class ConvolutionFilter {
                                               int height,
                                               double[][] kernel,
                                               int radius) {
-    double[][] returnImg = new double[width][height];
+    return Convolve(inputImg, width, height, kernel, radius, true);
+  }
+  
+  // unsaubere Impl am Rand, dort müsste normalisiert werden (wenn zB nur 6 Felder
+  // in der Maske sind statt 9, dann wird nicht durch 9 dividiert sondern durch 6)
+  public static double[][] ConvolveDouble(double[][] inputImg, int width, int height, double[][] kernel, int radius) {
+    return Convolve(inputImg, width, height, kernel, radius, false);
+  }
+  
+  /**
+   * Convolves the image with the given (2 * radius + 1)² kernel. Separable kernels (e.g. mean and gauss masks) are
+   * detected and applied as two 1D passes, rows are processed in parallel.
+   *
+   * @param normalized whether each result is divided by the sum of the kernel elements inside the image
+   */
+  public static double[][] Convolve(double[][] inputImg,
+                                    int width,
+                                    int height,
+                                    double[][] kernel,
+                                    int radius,
+                                    boolean normalized) {
+    final double[] input = toFlatArr(inputImg, width, height);
+    final double[][] separated = SeparateKernel(kernel, radius);
+    final double[] result = separated != null
+        ? convolveSeparable(input, width, height, separated[0], separated[1], radius, normalized)
+        : convolve2d(input, width, height, kernel, radius, normalized);
     
-    // step 1: move mask to all possible image pixel positions
-    for (int x = 0; x < width; x++) {
-      for (int y = 0; y < height; y++) {
-        double totalSum = .0;
-        double maskCount = .0;
+    return toArr2D(result, width, height);
+  }
+  
+  public static double[][] ConvolveSeparable(double[][] inputImg,
+                                             int width,
+                                             int height,
+                                             double[] kernelX,
+                                             double[] kernelY,
+                                             int radius,
+                                             boolean normalized) {
+    final double[] input = toFlatArr(inputImg, width, height);
+    final double[] result = convolveSeparable(input, width, height, kernelX, kernelY, radius, normalized);
+    
+    return toArr2D(result, width, height);
+  }
+  
+  /**
+   * Recursive gaussian smoothing (Young and van Vliet, 1995). Runs a third order IIR filter forwards and backwards in
+   * each direction, so the cost per pixel is constant regardless of sigma. Borders are extended with the edge color.
+   * The approximation is meant for large sigmas (about 3 and above); small sigmas are better served by a kernel.
+   *
+   * @param sigma standard deviation, must be at least 0.5
+   */
+  public static double[][] ConvolveGaussRecursive(double[][] inputImg, int width, int height, double sigma) {
+    final double[] input = toFlatArr(inputImg, width, height);
+    return toArr2D(gaussRecursive(input, width, height, sigma), width, height);
+  }
+  
+  static double[] gaussRecursive(final double[] input, final int width, final int height, final double sigma) {
+    if (sigma < MIN_RECURSIVE_SIGMA) {
+      throw new IllegalArgumentException("Recursive gauss filter requires sigma >= " + MIN_RECURSIVE_SIGMA);
+    }
+    
+    final double q = sigma >= 2.5d
+        ? 0.98711d * sigma - 0.96330d
+        : 3.97156d - 4.14554d * Math.sqrt(1d - 0.26891d * sigma);
+    final double qq = q * q;
+    final double qqq = qq * q;
+    final double b0 = 1.57825d + 2.44413d * q + 1.4281d * qq + 0.422205d * qqq;
+    final double b1 = (2.44413d * q + 2.85619d * qq + 1.26661d * qqq) / b0;
+    final double b2 = -(1.4281d * qq + 1.26661d * qqq) / b0;
+    final double b3 = 0.422205d * qqq / b0;
+    final double b = 1d - (b1 + b2 + b3);
+    
+    final double[] result = new double[width * height];
+    
+    // horizontal pass, one row at a time
+    TileScheduler.shared().forEachRows(height, (yStart, yEnd) -> {
+      for (int y = yStart; y < yEnd; y++) {
+        final int row = y * width;
+        double w1 = input[row];
+        double w2 = w1;
+        double w3 = w1;
+        for (int x = 0; x < width; x++) {
+          final double w = b * input[row + x] + b1 * w1 + b2 * w2 + b3 * w3;
+          result[row + x] = w;
+          w3 = w2;
+          w2 = w1;
+          w1 = w;
+        }
         
-        // step 2: iterate over all mask elements (yellow in lecture slides)
-        for (int xOffset = -radius; xOffset <= radius; xOffset++) {
-          for (int yOffset = -radius; yOffset <= radius; yOffset++) {
-            int nbx = x + xOffset;
-            int nby = y + yOffset;
-            
-            // step 3: check range of coordinates in convulution mask
-            if (nbx >= 0 && nbx < width && nby >= 0 && nby < height) {
-              totalSum += inputImg[nbx][nby] * kernel[xOffset + radius][yOffset + radius];
-              maskCount += kernel[xOffset + radius][yOffset + radius];
-            } // step 3
+        w2 = w3 = w1;
+        for (int x = width - 1; x >= 0; x--) {
+          final double w = b * result[row + x] + b1 * w1 + b2 * w2 + b3 * w3;
+          result[row + x] = w;
+          w3 = w2;
+          w2 = w1;
+          w1 = w;
+        }
+      }
+    });
+    
+    // vertical pass on bands of columns, walking whole row segments to stay cache friendly
+    final TileScheduler bands = TileScheduler.create(RECURSIVE_BAND_WIDTH, Math.max(height, 1));
+    bands.forEachTile(width, height, (xStart, y0, xEnd, y1) -> {
+      final int bandWidth = xEnd - xStart;
+      final double[] w1 = new double[bandWidth];
+      final double[] w2 = new double[bandWidth];
+      final double[] w3 = new double[bandWidth];
+      
+      System.arraycopy(result, xStart, w1, 0, bandWidth);
+      System.arraycopy(w1, 0, w2, 0, bandWidth);
+      System.arraycopy(w1, 0, w3, 0, bandWidth);
+      for (int y = 0; y < height; y++) {
+        final int row = y * width + xStart;
+        for (int i = 0; i < bandWidth; i++) {
+          final double w = b * result[row + i] + b1 * w1[i] + b2 * w2[i] + b3 * w3[i];
+          result[row + i] = w;
+          w3[i] = w2[i];
+          w2[i] = w1[i];
+          w1[i] = w;
+        }
+      }
+      
+      System.arraycopy(w1, 0, w2, 0, bandWidth);
+      System.arraycopy(w1, 0, w3, 0, bandWidth);
+      for (int y = height - 1; y >= 0; y--) {
+        final int row = y * width + xStart;
+        for (int i = 0; i < bandWidth; i++) {
+          final double w = b * result[row + i] + b1 * w1[i] + b2 * w2[i] + b3 * w3[i];
+          result[row + i] = w;
+          w3[i] = w2[i];
+          w2[i] = w1[i];
+          w1[i] = w;
+        }
+      }
+    });
+    
+    return result;
+  }
+  
+  /**
+   * Splits a rank-1 kernel into a horizontal and a vertical 1D kernel so that kernel[x][y] = kx[x] * ky[y].
+   *
+   * @return {kx, ky} or null if the kernel is not separable
+   */
+  public static double[][] SeparateKernel(double[][] kernel, int radius) {
+    final int size = 2 * radius + 1;
+    int pivotX = 0;
+    int pivotY = 0;
+    double maxAbs = 0d;
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        final double abs = Math.abs(kernel[x][y]);
+        if (abs > maxAbs) {
+          maxAbs = abs;
+          pivotX = x;
+          pivotY = y;
+        }
+      }
+    }
+    
+    if (maxAbs == 0d) {
+      return null;
+    }
+    
+    final double[] kernelX = new double[size];
+    final double[] kernelY = new double[size];
+    final double pivot = kernel[pivotX][pivotY];
+    for (int i = 0; i < size; i++) {
+      kernelX[i] = kernel[i][pivotY];
+      kernelY[i] = kernel[pivotX][i] / pivot;
+    }
+    
+    final double tolerance = SEPARABILITY_TOLERANCE * maxAbs;
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        if (Math.abs(kernel[x][y] - kernelX[x] * kernelY[y]) > tolerance) {
+          return null;
+        }
+      }
+    }
+    
+    return new double[][] { kernelX, kernelY };
+  }
+  
+  static double[] convolveSeparable(final double[] input,
+                                    final int width,
+                                    final int height,
+                                    final double[] kernelX,
+                                    final double[] kernelY,
+                                    final int radius,
+                                    final boolean normalized) {
+    final double[] prefixX = prefixSums(kernelX);
+    final double[] prefixY = prefixSums(kernelY);
+    final double[] temp = new double[width * height];
+    final double[] result = new double[width * height];
+    
+    // horizontal pass: kernel range is clipped once per pixel, the inner loop needs no bounds checks
+    TileScheduler.shared().forEachRows(height, (yStart, yEnd) -> {
+      for (int y = yStart; y < yEnd; y++) {
+        final int row = y * width;
+        for (int x = 0; x < width; x++) {
+          final int kStart = Math.max(-radius, -x);
+          final int kEnd = Math.min(radius, width - 1 - x);
+          double sum = 0d;
+          for (int k = kStart; k <= kEnd; k++) {
+            sum += input[row + x + k] * kernelX[k + radius];
           }
-        } // step 2
-        
-        // step 3.5: normalize
-        totalSum /= maskCount;
+          
+          temp[row + x] = normalized ? sum / (prefixX[kEnd + radius + 1] - prefixX[kStart + radius]) : sum;
+        }
+      }
+    });
+    
+    // vertical pass: accumulate whole rows to stream through memory
+    TileScheduler.shared().forEachRows(height, (yStart, yEnd) -> {
+      for (int y = yStart; y < yEnd; y++) {
+        final int row = y * width;
+        final int kStart = Math.max(-radius, -y);
+        final int kEnd = Math.min(radius, height - 1 - y);
+        for (int k = kStart; k <= kEnd; k++) {
+          final double weight = kernelY[k + radius];
+          final int sourceRow = (y + k) * width;
+          for (int x = 0; x < width; x++) {
+            result[row + x] += temp[sourceRow + x] * weight;
+          }
+        }
         
-        // step 4: store result to output image
-        returnImg[x][y] = totalSum;
+        if (normalized) {
+          final double weightSum = prefixY[kEnd + radius + 1] - prefixY[kStart + radius];
+          for (int x = 0; x < width; x++) {
+            result[row + x] /= weightSum;
+          }
+        }
+      }
+    });
+    
+    return result;
+  }
+  
+  static double[] convolve2d(final double[] input,
+                             final int width,
+                             final int height,
+                             final double[][] kernel,
+                             final int radius,
+                             final boolean normalized) {
+    final int size = 2 * radius + 1;
+    
+    // summed area table of the kernel, so the weight of a clipped kernel is available in O(1)
+    final double[][] kernelSums = new double[size + 1][size + 1];
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < size; j++) {
+        kernelSums[i + 1][j + 1] = kernel[i][j] + kernelSums[i][j + 1] + kernelSums[i + 1][j] - kernelSums[i][j];
       }
     }
     
-    return returnImg;
+    final double[] result = new double[width * height];
+    TileScheduler.shared().forEachRows(height, (rowStart, rowEnd) -> {
+      for (int y = rowStart; y < rowEnd; y++) {
+        final int yStart = Math.max(-radius, -y);
+        final int yEnd = Math.min(radius, height - 1 - y);
+        for (int x = 0; x < width; x++) {
+          final int xStart = Math.max(-radius, -x);
+          final int xEnd = Math.min(radius, width - 1 - x);
+          double sum = 0d;
+          for (int yOffset = yStart; yOffset <= yEnd; yOffset++) {
+            final int row = (y + yOffset) * width + x;
+            final int kernelY = yOffset + radius;
+            for (int xOffset = xStart; xOffset <= xEnd; xOffset++) {
+              sum += input[row + xOffset] * kernel[xOffset + radius][kernelY];
+            }
+          }
+          
+          if (normalized) {
+            sum /= kernelSums[xEnd + radius + 1][yEnd + radius + 1]
+                - kernelSums[xStart + radius][yEnd + radius + 1]
+                - kernelSums[xEnd + radius + 1][yStart + radius]
+                + kernelSums[xStart + radius][yStart + radius];
+          }
+          
+          result[y * width + x] = sum;
+        }
+      }
+    });
+    
+    return result;
   }
   
-  // unsaubere Impl am Rand, dort müsste normalisiert werden (wenn zB nur 6 Felder
-  // in der Maske sind statt 9, dann wird nicht durch 9 dividiert sondern durch 6)
-  public static double[][] ConvolveDouble(double[][] inputImg, int width, int height, double[][] kernel, int radius) {
-    double[][] returnImg = new double[width][height];
+  private static double[] prefixSums(final double[] kernel) {
+    final double[] sums = new double[kernel.length + 1];
+    for (int i = 0; i < kernel.length; i++) {
+      sums[i + 1] = sums[i] + kernel[i];
+    }
     
-    // step 1: move mask to all possible image pixel positions
+    return sums;
+  }
+  
+  private static double[] toFlatArr(final double[][] inputImg, final int width, final int height) {
+    final double[] result = new double[width * height];
     for (int x = 0; x < width; x++) {
+      final double[] column = inputImg[x];
       for (int y = 0; y < height; y++) {
-        double totalSum = .0;
-        
-        // step 2: iterate over all mask elements (yellow in lecture slides)
-        for (int xOffset = -radius; xOffset <= radius; xOffset++) {
-          for (int yOffset = -radius; yOffset <= radius; yOffset++) {
-            int nbx = x + xOffset;
-            int nby = y + yOffset;
-            
-            // step 3: check range of coordinates in convulution mask
-            if (nbx >= 0 && nbx < width && nby >= 0 && nby < height) {
-              totalSum += inputImg[nbx][nby] * kernel[xOffset + radius][yOffset + radius];
-            } // step 3
-          }
-        } // step 2
-        
-        // step 4: store result to output image
-        returnImg[x][y] = totalSum;
+        result[y * width + x] = column[y];
       }
     }
     
-    return returnImg;
+    return result;
+  }
+  
+  private static double[][] toArr2D(final double[] input, final int width, final int height) {
+    final double[][] result = new double[width][height];
+    for (int x = 0; x < width; x++) {
+      final double[] column = result[x];
+      for (int y = 0; y < height; y++) {
+        column[y] = input[y * width + x];
+      }
+    }
+    
+    return result;
   }
   
   public static double[][] GetMeanMask(int tgtRadius) {
@@ -104,16 +369,34 @@ public final class ConvolutionFilter {
     return kernelImg;
   }
   
+  /**
+   * Pure kernel factory without any I/O. Kernels are cached per (radius, sigma, normalized), each call returns a copy
+   * which may be modified freely. Use {@link #ExportGaussMask(int, double, boolean, String)} for diagnostics.
+   */
   public static double[][] GetGaussMask(int radius, double sigma, boolean normalized) {
-    int size = 2 * radius + 1;
-    double[][] kernelImg = new double[size][size];
+    final double[][] kernel = GAUSS_MASK_CACHE.computeIfAbsent(new GaussMaskKey(radius, sigma, normalized),
+        key -> createGaussMask(key.radius, key.sigma, key.normalized));
     
-    final double sigmaPow = sigma * sigma;
-    final double fixedPart = 1 / (2 * Math.PI * sigmaPow);
+    final double[][] copy = new double[kernel.length][];
+    for (int i = 0; i < kernel.length; i++) {
+      copy[i] = kernel[i].clone();
+    }
+    
+    return copy;
+  }
+  
+  /**
+   * Writes the gauss mask (and its normalized versions, if requested) as "gauss.csv" into the given directory.
+   */
+  public static void ExportGaussMask(int radius, double sigma, boolean normalized, String directory)
+      throws IOException {
+    final int size = 2 * radius + 1;
+    final double[][] kernelImg = GetGaussMask(radius, sigma, false);
+    
+    final double fixedPart = 1 / (2 * Math.PI * sigma * sigma);
     final double mu = size / 2d;
-    final double sigmaPowTwice = 2 * sigmaPow;
     
-    try (final CSV csv = new CSV("gauss", "UE01\\files")) {
+    try (final CSV csv = new CSV("gauss", directory)) {
       csv.open()
           .addRow(csv.row()
               .cell("radius")
@@ -132,22 +415,13 @@ public final class ConvolutionFilter {
       csvMaskTableHeader(size, mu, csv);
       
       double maskSum = 0d;
-      
-      double yDiff;
-      double xDiff;
       for (int y = 0; y < size; y++) {
-        yDiff = y - mu;
-        
         final CSV.Row maskRow = csv.row()
             .cell(y)
-            .cell(yDiff);
+            .cell(y - mu);
         for (int x = 0; x < size; x++) {
-          xDiff = x - mu;
-          final double value = fixedPart * Math.exp(-(xDiff * xDiff + yDiff * yDiff) / sigmaPowTwice);
-          kernelImg[x][y] = value;
-          
-          maskRow.cell(value);
-          maskSum += value;
+          maskRow.cell(kernelImg[x][y]);
+          maskSum += kernelImg[x][y];
         }
         
         csv.addRow(maskRow);
@@ -169,10 +443,9 @@ public final class ConvolutionFilter {
         
         double normalizedMaskSum = 0d;
         for (int y = 0; y < size; y++) {
-          yDiff = y - mu;
           final CSV.Row maskRow = csv.row()
               .cell(y)
-              .cell(yDiff);
+              .cell(y - mu);
           for (int x = 0; x < size; x++) {
             final double normalizedValue = kernelImg[x][y] / maskSum;
             kernelImg[x][y] = normalizedValue;
@@ -201,10 +474,9 @@ public final class ConvolutionFilter {
         
         final double toColorFactor = maxMaskValue / 255.0d;
         for (int y = 0; y < size; y++) {
-          yDiff = y - mu;
           final CSV.Row maskRow = csv.row()
               .cell(y)
-              .cell(yDiff);
+              .cell(y - mu);
           for (int x = 0; x < size; x++) {
             final int color = (int) Math.floor(kernelImg[x][y] / toColorFactor);
             maskRow.cell(color);
@@ -213,12 +485,7 @@ public final class ConvolutionFilter {
           csv.addRow(maskRow);
         }
       }
-      
-    } catch (Exception e) {
-      e.printStackTrace();
     }
-    
-    return kernelImg;
   }
   
   public static double[][] maskAsImage(double[][] kernel, int radius) {
@@ -304,4 +571,68 @@ public final class ConvolutionFilter {
     return returnImg;
   }
   
+  private static double[][] createGaussMask(final int radius, final double sigma, final boolean normalized) {
+    final int size = 2 * radius + 1;
+    final double[][] kernelImg = new double[size][size];
+    
+    final double sigmaPow = sigma * sigma;
+    final double fixedPart = 1 / (2 * Math.PI * sigmaPow);
+    final double mu = size / 2d;
+    final double sigmaPowTwice = 2 * sigmaPow;
+    
+    double maskSum = 0d;
+    for (int y = 0; y < size; y++) {
+      final double yDiff = y - mu;
+      for (int x = 0; x < size; x++) {
+        final double xDiff = x - mu;
+        final double value = fixedPart * Math.exp(-(xDiff * xDiff + yDiff * yDiff) / sigmaPowTwice);
+        kernelImg[x][y] = value;
+        maskSum += value;
+      }
+    }
+    
+    if (normalized) {
+      for (int x = 0; x < size; x++) {
+        for (int y = 0; y < size; y++) {
+          kernelImg[x][y] /= maskSum;
+        }
+      }
+    }
+    
+    return kernelImg;
+  }
+  
+  private static final class GaussMaskKey {
+    
+    private final int radius;
+    private final double sigma;
+    private final boolean normalized;
+    
+    private GaussMaskKey(final int radius, final double sigma, final boolean normalized) {
+      this.radius = radius;
+      this.sigma = sigma;
+      this.normalized = normalized;
+    }
+    
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      
+      if (!(o instanceof GaussMaskKey)) {
+        return false;
+      }
+      
+      final GaussMaskKey other = (GaussMaskKey) o;
+      return radius == other.radius && Double.compare(sigma, other.sigma) == 0 && normalized == other.normalized;
+    }
+    
+    @Override
+    public int hashCode() {
+      return Objects.hash(radius, sigma, normalized);
+    }
+    
+  }
+  
 }
@@ -0,0 +1,78 @@
+package at.sschmid.hcc.sbv1.image;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gaussian image pyramid. Level 0 is the original image, every further level is smoothed with a 5x5 binomial kernel
+ * and then subsampled by 2 in both directions, so a pixel of level n covers 2^n pixels of the original image.
+ */
+public final class GaussianPyramid {
+  
+  private static final double[] BINOMIAL_KERNEL = { 1d / 16d, 4d / 16d, 6d / 16d, 4d / 16d, 1d / 16d };
+  private static final int KERNEL_RADIUS = 2;
+  private static final int MIN_LEVEL_SIZE = 8;
+  
+  private final List<Image> levels = new ArrayList<>();
+  
+  /**
+   * @param maxLevels the number of levels including the original image. Fewer levels are built if a level would
+   *                  become smaller than 8 pixels in either direction.
+   */
+  public GaussianPyramid(final Image image, final int maxLevels) {
+    if (maxLevels < 1) {
+      throw new IllegalArgumentException("A pyramid needs at least one level");
+    }
+    
+    levels.add(image);
+    Image current = image;
+    while (levels.size() < maxLevels
+        && current.width / 2 >= MIN_LEVEL_SIZE
+        && current.height / 2 >= MIN_LEVEL_SIZE) {
+      current = reduce(current);
+      levels.add(current);
+    }
+  }
+  
+  public int levels() {
+    return levels.size();
+  }
+  
+  public Image level(final int level) {
+    return levels.get(level);
+  }
+  
+  private static Image reduce(final Image image) {
+    final double[] input = new double[image.size];
+    final PixelBuffer pixels = image.pixels;
+    for (int y = 0; y < image.height; y++) {
+      final int offset = pixels.index(0, y);
+      for (int x = 0; x < image.width; x++) {
+        input[y * image.width + x] = pixels.get(offset + x);
+      }
+    }
+    
+    final double[] smoothed = ConvolutionFilter.convolveSeparable(input,
+        image.width,
+        image.height,
+        BINOMIAL_KERNEL,
+        BINOMIAL_KERNEL,
+        KERNEL_RADIUS,
+        true);
+    
+    final int width = (image.width + 1) / 2;
+    final int height = (image.height + 1) / 2;
+    final Image result = new Image(String.format("%s - pyramid %dx%d", image.getName(), width, height),
+        pixels.createEmpty(width, height),
+        image.maxColor);
+    for (int y = 0; y < height; y++) {
+      final int row = 2 * y * image.width;
+      for (int x = 0; x < width; x++) {
+        result.set(x, y, (int) (smoothed[row + 2 * x] + 0.5d));
+      }
+    }
+    
+    return result;
+  }
+  
+}
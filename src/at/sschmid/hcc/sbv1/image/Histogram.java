@@ -1,6 +1,7 @@
 package at.sschmid.hcc.sbv1.image;
 
 import at.sschmid.hcc.sbv1.image.segmentation.OptimalThreshold;
+import at.sschmid.hcc.sbv1.image.segmentation.ThresholdMethod;
 
 import java.util.Arrays;
 
@@ -22,9 +23,12 @@ public final class Histogram {
     this.image = image;
     this.count = image.size;
     this.data = new int[image.maxColor + 1];
-    for (int x = 0; x < image.width; x++) {
-      for (int y = 0; y < image.height; y++) {
-        this.data[image.data[x][y]]++;
+    final PixelBuffer pixels = image.pixels;
+    for (int y = 0; y < image.height; y++) {
+      final int offset = pixels.index(0, y);
+      final int end = offset + image.width;
+      for (int i = offset; i < end; i++) {
+        this.data[pixels.get(i)]++;
       }
     }
   }
@@ -53,6 +57,10 @@ public final class Histogram {
     return new OptimalThreshold(this, version);
   }
   
+  public OptimalThreshold optimalThreshold(final ThresholdMethod method) {
+    return new OptimalThreshold(this, method);
+  }
+  
   public int getMinOccurringColor() {
     calculateStatistics();
     return minOccurringColor;
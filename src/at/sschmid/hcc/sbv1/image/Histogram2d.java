@@ -25,9 +25,9 @@ public final class Histogram2d {
     this.count = image1.size;
     final int dataSize = image1.maxColor + 1;
     this.data = new int[dataSize][dataSize];
-    for (int x = 0; x < image1.width; x++) {
-      for (int y = 0; y < image1.height; y++) {
-        this.data[image1.data[x][y]][image2.data[x][y]]++;
+    for (int y = 0; y < image1.height; y++) {
+      for (int x = 0; x < image1.width; x++) {
+        this.data[image1.get(x, y)][image2.get(x, y)]++;
       }
     }
   }
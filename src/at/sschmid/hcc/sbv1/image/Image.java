@@ -6,6 +6,7 @@ import at.sschmid.hcc.sbv1.image.registration.DistanceMetric;
 import at.sschmid.hcc.sbv1.image.resampling.Interpolation;
 import at.sschmid.hcc.sbv1.image.resampling.Transformation;
 import at.sschmid.hcc.sbv1.image.segmentation.BinaryThreshold;
+import at.sschmid.hcc.sbv1.image.segmentation.LocalThreshold;
 import at.sschmid.hcc.sbv1.image.segmentation.Segment;
 import at.sschmid.hcc.sbv1.image.segmentation.Segmentation;
 import at.sschmid.hcc.sbv1.utility.Point;
@@ -22,7 +23,7 @@ public final class Image {
   private static int totalImages = 0;
   
   public final int maxColor;
-  public final int[][] data;
+  public final PixelBuffer pixels;
   public final int width;
   public final int height;
   public final int size;
@@ -36,15 +37,7 @@ public final class Image {
   }
   
   public Image(final Image image, final boolean copyData) {
-    this(image.name, null, image.width, image.height, image.maxColor);
-    
-    if (copyData) {
-      for (int x = 0; x < image.width; x++) {
-        if (image.height >= 0) {
-          System.arraycopy(image.data[x], 0, data[x], 0, image.height);
-        }
-      }
-    }
+    this(image.name, copyData ? image.pixels.copy() : image.pixels.createEmpty(), image.maxColor);
   }
   
   public Image(final int width, final int height) {
@@ -68,13 +61,26 @@ public final class Image {
   }
   
   public Image(final String name, final int[][] data, final int width, final int height, final int maxColor) {
+    this(name, PixelBuffer.create(width, height, maxColor), maxColor);
+    
+    if (data != null) {
+      for (int y = 0; y < height; y++) {
+        final int offset = pixels.index(0, y);
+        for (int x = 0; x < width; x++) {
+          pixels.set(offset + x, data[x][y]);
+        }
+      }
+    }
+  }
+  
+  public Image(final String name, final PixelBuffer pixels, final int maxColor) {
     this.imageCount = ++totalImages;
     this.maxColor = maxColor;
     this.name = name;
-    this.data = data == null ? new int[width][height] : data;
-    this.width = width;
-    this.height = height;
-    this.size = width * height;
+    this.pixels = pixels;
+    this.width = pixels.width;
+    this.height = pixels.height;
+    this.size = pixels.size;
   }
   
   public boolean hasName() {
@@ -94,6 +100,26 @@ public final class Image {
     return this;
   }
   
+  public int get(final int x, final int y) {
+    return pixels.get(x, y);
+  }
+  
+  public void set(final int x, final int y, final int color) {
+    pixels.set(x, y, color);
+  }
+  
+  public int[][] toArray() {
+    final int[][] data = new int[width][height];
+    for (int y = 0; y < height; y++) {
+      final int offset = pixels.index(0, y);
+      for (int x = 0; x < width; x++) {
+        data[x][y] = pixels.get(offset + x);
+      }
+    }
+    
+    return data;
+  }
+  
   public Image binary(final BinaryThreshold binaryThreshold) {
     final int[] tf = binaryThreshold.getTransformFunction(maxColor);
     final Image result = transformation().transfer(tf).getResult();
@@ -113,10 +139,22 @@ public final class Image {
     return new DistanceMap(this, distanceMetric);
   }
   
+  public DistanceMap distanceMap(final DistanceMetric distanceMetric, final int foreground) {
+    return new DistanceMap(this, distanceMetric, foreground);
+  }
+  
   public Histogram histogram() {
     return new Histogram(this);
   }
   
+  public IntegralImage integralImage() {
+    return new IntegralImage(this);
+  }
+  
+  public LocalThreshold localThreshold() {
+    return new LocalThreshold(this);
+  }
+  
   public Histogram2d histogram2d(final Image other) {
     return new Histogram2d(this, other);
   }
@@ -137,6 +175,14 @@ public final class Image {
     return new Segmentation(this);
   }
   
+  public MedianFilter median(final int radius) {
+    return new MedianFilter(this, radius);
+  }
+  
+  public GaussianPyramid pyramid(final int levels) {
+    return new GaussianPyramid(this, levels);
+  }
+  
   public Checkerboard checkerboard(final Image other) {
     return new Checkerboard(this, other);
   }
@@ -205,7 +251,7 @@ public final class Image {
   }
   
   public void show(final String label) {
-    ImageJUtility.showNewImage(data, width, height, label);
+    ImageJUtility.showNewImage(this, label);
   }
   
   @Override
@@ -1,5 +1,7 @@
 package at.sschmid.hcc.sbv1.image;
 
+import at.sschmid.hcc.sbv1.utility.TileScheduler;
+
 public final class ImageCalculation {
   
   private final Image image1;
@@ -32,11 +34,13 @@ public final class ImageCalculation {
   
   private Image calculate(final String operationName, final Operation operation) {
     final Image result = new Image(getImageName(operationName), image1.width, image1.height);
-    for (int x = 0; x < image1.width; x++) {
-      for (int y = 0; y < image1.height; y++) {
-        result.data[x][y] = operation.getResultColor(image1.data[x][y], image2.data[x][y]);
+    TileScheduler.shared().forEachTile(image1.width, image1.height, (x0, y0, x1, y1) -> {
+      for (int y = y0; y < y1; y++) {
+        for (int x = x0; x < x1; x++) {
+          result.set(x, y, operation.getResultColor(image1.get(x, y), image2.get(x, y)));
+        }
       }
-    }
+    });
     
     return result;
   }
@@ -0,0 +1,144 @@
+package at.sschmid.hcc.sbv1.image;
+
+import at.sschmid.hcc.sbv1.utility.TileScheduler;
+
+/**
+ * Summed-area table of an {@link Image}. Sums, means and variances of arbitrary rectangles are available in O(1),
+ * independent of the size of the rectangle.
+ */
+public final class IntegralImage {
+  
+  private final Image image;
+  private final int width;
+  private final int height;
+  private final int stride;
+  private final long[] sums;
+  
+  private volatile long[] squaredSums;
+  
+  public IntegralImage(final Image image) {
+    this.image = image;
+    this.width = image.width;
+    this.height = image.height;
+    this.stride = width + 1;
+    this.sums = new long[stride * (height + 1)];
+    
+    final PixelBuffer pixels = image.pixels;
+    for (int y = 0; y < height; y++) {
+      final int offset = pixels.index(0, y);
+      final int row = (y + 1) * stride;
+      long rowSum = 0;
+      for (int x = 0; x < width; x++) {
+        rowSum += pixels.get(offset + x);
+        sums[row + x + 1] = sums[row - stride + x + 1] + rowSum;
+      }
+    }
+  }
+  
+  public Image getImage() {
+    return image;
+  }
+  
+  /**
+   * @return the number of pixels in the rectangle [x0;x1] x [y0;y1] after clipping it to the image.
+   */
+  public int count(final int x0, final int y0, final int x1, final int y1) {
+    final int left = Math.max(x0, 0);
+    final int top = Math.max(y0, 0);
+    final int right = Math.min(x1, width - 1);
+    final int bottom = Math.min(y1, height - 1);
+    
+    return right < left || bottom < top ? 0 : (right - left + 1) * (bottom - top + 1);
+  }
+  
+  /**
+   * @return the sum of all colors in the rectangle [x0;x1] x [y0;y1] (inclusive, clipped to the image).
+   */
+  public long sum(final int x0, final int y0, final int x1, final int y1) {
+    return sum(sums, x0, y0, x1, y1);
+  }
+  
+  /**
+   * @return the sum of all squared colors in the rectangle [x0;x1] x [y0;y1] (inclusive, clipped to the image).
+   */
+  public long squaredSum(final int x0, final int y0, final int x1, final int y1) {
+    return sum(getSquaredSums(), x0, y0, x1, y1);
+  }
+  
+  public double mean(final int x0, final int y0, final int x1, final int y1) {
+    final int count = count(x0, y0, x1, y1);
+    return count > 0 ? sum(x0, y0, x1, y1) / (double) count : 0d;
+  }
+  
+  public double variance(final int x0, final int y0, final int x1, final int y1) {
+    final int count = count(x0, y0, x1, y1);
+    if (count == 0) {
+      return 0d;
+    }
+    
+    final double mean = sum(x0, y0, x1, y1) / (double) count;
+    return Math.max(squaredSum(x0, y0, x1, y1) / (double) count - mean * mean, 0d);
+  }
+  
+  public double standardDeviation(final int x0, final int y0, final int x1, final int y1) {
+    return Math.sqrt(variance(x0, y0, x1, y1));
+  }
+  
+  /**
+   * Box (mean) filter with a (2 * radius + 1)² mask. At the borders only pixels inside the image are averaged.
+   */
+  public Image mean(final int radius) {
+    final Image result = new Image(String.format("%s - mean r=%d", image.getName(), radius),
+        image.pixels.createEmpty(),
+        image.maxColor);
+    final PixelBuffer target = result.pixels;
+    TileScheduler.shared().forEachRows(height, (yStart, yEnd) -> {
+      for (int y = yStart; y < yEnd; y++) {
+        final int offset = target.index(0, y);
+        for (int x = 0; x < width; x++) {
+          final double mean = mean(x - radius, y - radius, x + radius, y + radius);
+          target.set(offset + x, (int) (mean + 0.5d));
+        }
+      }
+    });
+    
+    return result;
+  }
+  
+  private long[] getSquaredSums() {
+    if (squaredSums == null) {
+      final long[] squares = new long[sums.length];
+      final PixelBuffer pixels = image.pixels;
+      for (int y = 0; y < height; y++) {
+        final int offset = pixels.index(0, y);
+        final int row = (y + 1) * stride;
+        long rowSum = 0;
+        for (int x = 0; x < width; x++) {
+          final long color = pixels.get(offset + x);
+          rowSum += color * color;
+          squares[row + x + 1] = squares[row - stride + x + 1] + rowSum;
+        }
+      }
+      
+      squaredSums = squares;
+    }
+    
+    return squaredSums;
+  }
+  
+  private long sum(final long[] table, final int x0, final int y0, final int x1, final int y1) {
+    final int left = Math.max(x0, 0);
+    final int top = Math.max(y0, 0);
+    final int right = Math.min(x1, width - 1) + 1;
+    final int bottom = Math.min(y1, height - 1) + 1;
+    if (right <= left || bottom <= top) {
+      return 0;
+    }
+    
+    return table[bottom * stride + right]
+        - table[top * stride + right]
+        - table[bottom * stride + left]
+        + table[top * stride + left];
+  }
+  
+}
@@ -0,0 +1,115 @@
+package at.sschmid.hcc.sbv1.image;
+
+import at.sschmid.hcc.sbv1.utility.TileScheduler;
+
+import java.util.Arrays;
+
+/**
+ * Median filter with a (2 * radius + 1)² mask based on Huang's sliding histogram: moving the mask by one pixel only
+ * removes and adds one column, and the median is tracked incrementally instead of sorting the mask. The image is
+ * processed in parallel stripes of rows. At the borders only pixels inside the image are considered.
+ */
+public final class MedianFilter implements ImageGenerator {
+  
+  private static final int MAX_SUPPORTED_COLOR = 0xFFFF;
+  
+  private final Image image;
+  private final int radius;
+  
+  private Image result;
+  
+  public MedianFilter(final Image image, final int radius) {
+    if (radius < 0) {
+      throw new IllegalArgumentException("Radius must not be negative");
+    }
+    
+    if (image.maxColor > MAX_SUPPORTED_COLOR) {
+      throw new IllegalArgumentException("Median filter supports images with a maxColor of at most 65535");
+    }
+    
+    this.image = image;
+    this.radius = radius;
+  }
+  
+  @Override
+  public Image getResult() {
+    if (result == null) {
+      result = new Image(String.format("%s - median r=%d", image.getName(), radius),
+          image.pixels.createEmpty(),
+          image.maxColor);
+      
+      TileScheduler.shared().forEachRows(image.height, (yStart, yEnd) -> filterRows(yStart, yEnd, result.pixels));
+    }
+    
+    return result;
+  }
+  
+  private void filterRows(final int yStart, final int yEnd, final PixelBuffer target) {
+    final PixelBuffer source = image.pixels;
+    final int width = image.width;
+    final int[] histogram = new int[image.maxColor + 1];
+    
+    for (int y = yStart; y < yEnd; y++) {
+      final int top = Math.max(y - radius, 0);
+      final int bottom = Math.min(y + radius, image.height - 1);
+      final int rows = bottom - top + 1;
+      
+      // initial window for x = 0
+      Arrays.fill(histogram, 0);
+      final int initialRight = Math.min(radius, width - 1);
+      for (int x = 0; x <= initialRight; x++) {
+        for (int row = top; row <= bottom; row++) {
+          histogram[source.get(x, row)]++;
+        }
+      }
+      
+      int count = (initialRight + 1) * rows;
+      int median = 0;
+      int below = 0;
+      
+      final int targetOffset = target.index(0, y);
+      for (int x = 0; x < width; x++) {
+        if (x > 0) {
+          final int removeX = x - radius - 1;
+          if (removeX >= 0) {
+            for (int row = top; row <= bottom; row++) {
+              final int color = source.get(removeX, row);
+              histogram[color]--;
+              if (color < median) {
+                below--;
+              }
+            }
+            count -= rows;
+          }
+          
+          final int addX = x + radius;
+          if (addX < width) {
+            for (int row = top; row <= bottom; row++) {
+              final int color = source.get(addX, row);
+              histogram[color]++;
+              if (color < median) {
+                below++;
+              }
+            }
+            count += rows;
+          }
+        }
+        
+        // lower median: the value at rank (count - 1) / 2 of the sorted mask
+        final int rank = (count - 1) / 2;
+        while (below > rank) {
+          median--;
+          below -= histogram[median];
+        }
+        
+        while (below + histogram[median] <= rank) {
+          below += histogram[median];
+          median++;
+        }
+        
+        target.set(targetOffset + x, median);
+      }
+    }
+  }
+  
+}
@@ -0,0 +1,129 @@
+package at.sschmid.hcc.sbv1.image;
+
+/**
+ * Contiguous, row-major pixel storage behind {@link Image}. A pixel (x, y) lives at {@code y * stride + x}; the
+ * smallest primitive type that can hold {@code maxColor} is chosen by {@link #create(int, int, int)}.
+ */
+public abstract class PixelBuffer {
+  
+  private static final int BYTE_MAX_COLOR = 0xFF;
+  private static final int SHORT_MAX_COLOR = 0xFFFF;
+  
+  public static PixelBuffer create(final int width, final int height, final int maxColor) {
+    if (maxColor < 0) {
+      throw new IllegalArgumentException("maxColor must not be negative");
+    }
+    
+    if (maxColor <= BYTE_MAX_COLOR) {
+      return new BytePixelBuffer(width, height);
+    }
+    
+    if (maxColor <= SHORT_MAX_COLOR) {
+      return new ShortPixelBuffer(width, height);
+    }
+    
+    return new IntPixelBuffer(width, height);
+  }
+  
+  /**
+   * Creates a signed 32-bit buffer, e.g. for intermediate results that need values outside of [0;maxColor].
+   */
+  public static PixelBuffer createInt(final int width, final int height) {
+    return new IntPixelBuffer(width, height);
+  }
+  
+  public static BytePixelBuffer wrap(final byte[] data, final int width, final int height) {
+    return new BytePixelBuffer(data, width, height, width, false);
+  }
+  
+  /**
+   * Wraps {@code data} without copying it. The array is only copied once the buffer is written to, so it can safely
+   * be shared with its original owner (e.g. an ImageJ {@code ByteProcessor}).
+   */
+  public static BytePixelBuffer wrapCopyOnWrite(final byte[] data, final int width, final int height) {
+    return new BytePixelBuffer(data, width, height, width, true);
+  }
+  
+  public static ShortPixelBuffer wrap(final short[] data, final int width, final int height) {
+    return new ShortPixelBuffer(data, width, height, width);
+  }
+  
+  public static IntPixelBuffer wrap(final int[] data, final int width, final int height) {
+    return new IntPixelBuffer(data, width, height, width);
+  }
+  
+  public final int width;
+  public final int height;
+  public final int stride;
+  public final int size;
+  
+  PixelBuffer(final int width, final int height, final int stride) {
+    if (width < 0 || height < 0 || stride < width) {
+      throw new IllegalArgumentException(String.format("Invalid buffer dimensions w=%d, h=%d, stride=%d",
+          width,
+          height,
+          stride));
+    }
+    
+    this.width = width;
+    this.height = height;
+    this.stride = stride;
+    this.size = width * height;
+  }
+  
+  public final int index(final int x, final int y) {
+    return y * stride + x;
+  }
+  
+  public final int get(final int x, final int y) {
+    return get(y * stride + x);
+  }
+  
+  public final void set(final int x, final int y, final int value) {
+    set(y * stride + x, value);
+  }
+  
+  public abstract int get(final int index);
+  
+  public abstract void set(final int index, final int value);
+  
+  /**
+   * Copies row {@code y} into {@code target}, which must have at least {@link #width} elements.
+   */
+  public void getRow(final int y, final int[] target) {
+    final int offset = y * stride;
+    for (int x = 0; x < width; x++) {
+      target[x] = get(offset + x);
+    }
+  }
+  
+  /**
+   * Copies {@link #width} values from {@code source} into row {@code y}.
+   */
+  public void setRow(final int y, final int[] source) {
+    final int offset = y * stride;
+    for (int x = 0; x < width; x++) {
+      set(offset + x, source[x]);
+    }
+  }
+  
+  public abstract void fill(final int value);
+  
+  /**
+   * @return an empty buffer of the same type and dimensions.
+   */
+  public abstract PixelBuffer createEmpty();
+  
+  /**
+   * @return a buffer of the same type with different dimensions.
+   */
+  public abstract PixelBuffer createEmpty(final int width, final int height);
+  
+  public abstract PixelBuffer copy();
+  
+  /**
+   * @return the number of bytes per pixel of the backing array.
+   */
+  public abstract int bytesPerPixel();
+  
+}
@@ -0,0 +1,70 @@
+package at.sschmid.hcc.sbv1.image;
+
+import java.util.Arrays;
+
+public final class ShortPixelBuffer extends PixelBuffer {
+  
+  private final short[] data;
+  
+  ShortPixelBuffer(final int width, final int height) {
+    this(new short[width * height], width, height, width);
+  }
+  
+  ShortPixelBuffer(final short[] data, final int width, final int height, final int stride) {
+    super(width, height, stride);
+    if (data.length < (height - 1) * stride + width) {
+      throw new IllegalArgumentException("Backing array is too small for the given dimensions");
+    }
+    
+    this.data = data;
+  }
+  
+  public short[] array() {
+    return data;
+  }
+  
+  @Override
+  public int get(final int index) {
+    return data[index] & 0xFFFF;
+  }
+  
+  @Override
+  public void set(final int index, final int value) {
+    data[index] = (short) value;
+  }
+  
+  @Override
+  public void fill(final int value) {
+    Arrays.fill(data, (short) value);
+  }
+  
+  @Override
+  public PixelBuffer createEmpty() {
+    return new ShortPixelBuffer(width, height);
+  }
+  
+  @Override
+  public PixelBuffer createEmpty(final int width, final int height) {
+    return new ShortPixelBuffer(width, height);
+  }
+  
+  @Override
+  public PixelBuffer copy() {
+    final short[] copy = new short[width * height];
+    if (stride == width) {
+      System.arraycopy(data, 0, copy, 0, copy.length);
+    } else {
+      for (int y = 0; y < height; y++) {
+        System.arraycopy(data, y * stride, copy, y * width, width);
+      }
+    }
+    
+    return new ShortPixelBuffer(copy, width, height, width);
+  }
+  
+  @Override
+  public int bytesPerPixel() {
+    return 2;
+  }
+  
+}
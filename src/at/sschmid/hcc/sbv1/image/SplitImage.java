@@ -23,11 +23,12 @@ public final class SplitImage {
       currentSplit = new Image(splitWidth, image.height);
       
       final int startX = i * splitWidth;
-      final int endX = startX + splitWidth;
-      for (int x = startX; x < endX; x++) {
-        if (image.height >= 0) {
-          System.arraycopy(image.data[x], 0, currentSplit.data[x - startX], 0, image.height);
-        }
+      final int[] row = new int[image.width];
+      final int[] splitRow = new int[splitWidth];
+      for (int y = 0; y < image.height; y++) {
+        image.pixels.getRow(y, row);
+        System.arraycopy(row, startX, splitRow, 0, splitWidth);
+        currentSplit.pixels.setRow(y, splitRow);
       }
       
       images.add(currentSplit);
@@ -89,9 +89,7 @@ public abstract class AbstractPlugIn implements PlugInFilter {
     final int width = imageProcessor.getWidth();
     final int height = imageProcessor.getHeight();
     
-    final int[][] inDataArrInt = ImageJUtility.convertFrom1DByteArr(pixels, width, height);
-    
-    return new Image(imageName, inDataArrInt, width, height);
+    return ImageJUtility.convertFrom1DByteArr(imageName, pixels, width, height);
   }
   
   private void showResults() {
@@ -1,6 +1,8 @@
 package at.sschmid.hcc.sbv1.image.imagej;
 
+import at.sschmid.hcc.sbv1.image.BytePixelBuffer;
 import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.image.PixelBuffer;
 import at.sschmid.hcc.sbv1.utility.Point;
 import ij.ImagePlus;
 import ij.gui.PointRoi;
@@ -33,17 +35,36 @@ public final class ImageJUtility {
     return inArray2D;
   }
   
+  public static Image convertFrom1DByteArr(final String name, final byte[] pixels, final int width, final int height) {
+    return new Image(name, PixelBuffer.wrapCopyOnWrite(pixels, width, height), 255);
+  }
+  
   public static double[][] convertToDoubleArr2D(final Image image) {
     double[][] returnArr = new double[image.width][image.height];
-    for (int x = 0; x < image.width; x++) {
-      for (int y = 0; y < image.height; y++) {
-        returnArr[x][y] = image.data[x][y];
+    for (int y = 0; y < image.height; y++) {
+      final int offset = image.pixels.index(0, y);
+      for (int x = 0; x < image.width; x++) {
+        returnArr[x][y] = image.pixels.get(offset + x);
       }
     }
     
     return returnArr;
   }
   
+  public static byte[] convertToByteArr(final Image image) {
+    final PixelBuffer pixels = image.pixels;
+    final byte[] outArray = new byte[image.size];
+    int pixelIdx1D = 0;
+    for (int y = 0; y < image.height; y++) {
+      final int offset = pixels.index(0, y);
+      for (int x = 0; x < image.width; x++) {
+        outArray[pixelIdx1D++] = (byte) pixels.get(offset + x);
+      }
+    }
+    
+    return outArray;
+  }
+  
   public static int[][] convertToIntArr2D(double[][] inArr, int width, int height) {
     int[][] returnArr = new int[width][height];
     for (int x = 0; x < width; x++) {
@@ -73,6 +94,22 @@ public final class ImageJUtility {
     return outArray2D;
   }
   
+  public static void showNewImage(final Image image, final String title) {
+    ImageJUtility.showNewImage(toByteArr(image), image.width, image.height, title);
+  }
+  
+  /**
+   * Returns the backing array of 8-bit images without copying (shared copy-on-write), otherwise a converted copy.
+   */
+  public static byte[] toByteArr(final Image image) {
+    final PixelBuffer pixels = image.pixels;
+    if (pixels instanceof BytePixelBuffer && pixels.stride == pixels.width) {
+      return ((BytePixelBuffer) pixels).share();
+    }
+    
+    return convertToByteArr(image);
+  }
+  
   public static void showNewImage(int[][] inArr, int width, int height, String title) {
     byte[] byteArr = ImageJUtility.convertFrom2DIntArr(inArr, width, height);
     ImageJUtility.showNewImage(byteArr, width, height, title);
@@ -0,0 +1,84 @@
+package at.sschmid.hcc.sbv1.image.registration;
+
+/**
+ * Base class of the optimizers. Keeps track of the best evaluated point and strictly enforces the evaluation budget:
+ * once it is used up, nothing is evaluated anymore, the search loops stop at their next {@link Evaluations#exhausted()}
+ * check and the best point so far is returned.
+ */
+abstract class AbstractOptimizer implements Optimizer {
+  
+  @Override
+  public final Result optimize(final Objective objective,
+                               final double[] start,
+                               final double[] steps,
+                               final int maxEvaluations,
+                               final double tolerance) {
+    if (start.length != steps.length) {
+      throw new IllegalArgumentException("start and steps must have the same number of parameters");
+    }
+    
+    if (maxEvaluations <= 0 || tolerance < 0) {
+      throw new IllegalArgumentException("maxEvaluations must be positive and tolerance must not be negative");
+    }
+    
+    final Evaluations evaluations = new Evaluations(objective, maxEvaluations);
+    search(evaluations, start.clone(), steps.clone(), tolerance);
+    return new Result(evaluations.best.clone(), evaluations.bestValue, evaluations.count);
+  }
+  
+  abstract void search(final Evaluations evaluations,
+                       final double[] start,
+                       final double[] steps,
+                       final double tolerance);
+  
+  /**
+   * @return true if the change between two values is below the relative {@code tolerance}
+   */
+  static boolean converged(final double value1, final double value2, final double tolerance) {
+    return Math.abs(value1 - value2) <= tolerance * Math.max(Math.abs(value1) + Math.abs(value2), Double.MIN_NORMAL);
+  }
+  
+  static final class Evaluations {
+    
+    private final Objective objective;
+    private final int maxEvaluations;
+    
+    private int count;
+    private double[] best;
+    private double bestValue;
+    
+    private Evaluations(final Objective objective, final int maxEvaluations) {
+      this.objective = objective;
+      this.maxEvaluations = maxEvaluations;
+    }
+    
+    /**
+     * @return the value at {@code parameters}; once the budget is used up the best value so far, which no other value
+     * is better than, without evaluating
+     */
+    double evaluate(final double[] parameters) {
+      if (exhausted()) {
+        return bestValue;
+      }
+      
+      count++;
+      final double value = objective.evaluate(parameters);
+      if (best == null || objective.isBetter(value, bestValue)) {
+        best = parameters.clone();
+        bestValue = value;
+      }
+      
+      return value;
+    }
+    
+    boolean exhausted() {
+      return count >= maxEvaluations;
+    }
+    
+    boolean isBetter(final double value, final double bestValue) {
+      return objective.isBetter(value, bestValue);
+    }
+    
+  }
+  
+}
@@ -1,15 +1,27 @@
 package at.sschmid.hcc.sbv1.image.registration;
 
 import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.image.resampling.AffineMatrix;
 import at.sschmid.hcc.sbv1.image.segmentation.BinaryThreshold;
-import at.sschmid.hcc.sbv1.utility.Point;
 
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Arrays;
 
+/**
+ * Sum of the distances of the edge points of image 2 to the nearest edge of image 1. The distance map of the fixed
+ * image 1 is calculated once in {@link #init(Image, Image)}, a candidate pose only moves the edge points of image 2,
+ * so every evaluation is a lookup per edge point. Edge points outside of image 1 are charged the distance to the
+ * border plus the distance at the border. Both caches belong to the images given to {@link #init(Image, Image)}, every
+ * call with other images throws an {@link IllegalStateException}; only the image 2 of the pose-less variants may be
+ * any image.
+ */
 final class ChamferMatchingMetric implements MatchMetric {
   
-  private Collection<Point> image1EdgePoints;
+  private Image image1;
+  private Image image2;
+  private int width;
+  private int height;
+  private float[] image1Distances;
+  private EdgePoints image2EdgePoints;
   
   ChamferMatchingMetric() {
     // nothing to do
@@ -17,26 +29,127 @@ final class ChamferMatchingMetric implements MatchMetric {
   
   @Override
   public void init(final Image image1, final Image image2) {
-    final Image image1Edges = image1.edges().binary(new BinaryThreshold(1, 0, image1.maxColor));
-    image1EdgePoints = new LinkedList<>();
-    for (int x = 0; x < image1.width; x++) {
-      for (int y = 0; y < image1.height; y++) {
-        if (image1Edges.data[x][y] == image1Edges.maxColor) {
-          image1EdgePoints.add(new Point(x, y));
-        }
-      }
-    }
+    this.image1 = image1;
+    this.image2 = image2;
+    width = image1.width;
+    height = image1.height;
+    
+    final Image image1Edges = edges(image1);
+    image1Distances = image1Edges.distanceMap(DistanceMetric.EuklidExact, image1Edges.maxColor).calculateFloat();
+    
+    image2EdgePoints = new EdgePoints(edges(image2));
   }
   
   @Override
   public double getMatch(final Image image1, final Image image2) {
-    final double[][] image2Distances = image2.distanceMap(DistanceMetric.Euklid).calculate();
+    checkImage1(image1);
+    return getMatch(new EdgePoints(edges(image2)), AffineMatrix.identity(), Double.POSITIVE_INFINITY);
+  }
+  
+  /**
+   * {@code image2} has to be the image 2 of {@link #init(Image, Image)}, its edge points are reused.
+   */
+  @Override
+  public double getMatch(final Image image1, final Image image2, final AffineMatrix pose) {
+    checkImages(image1, image2);
+    return getMatch(image2EdgePoints, pose.inverse(), Double.POSITIVE_INFINITY);
+  }
+  
+  @Override
+  public double getMatch(final Image image1, final Image image2, final double bestSoFar) {
+    checkImage1(image1);
+    return getMatch(new EdgePoints(edges(image2)), AffineMatrix.identity(), bestSoFar);
+  }
+  
+  @Override
+  public double getMatch(final Image image1, final Image image2, final AffineMatrix pose, final double bestSoFar) {
+    checkImages(image1, image2);
+    return getMatch(image2EdgePoints, pose.inverse(), bestSoFar);
+  }
+  
+  /**
+   * @param forward maps image 2 to image 1, i.e. the inverse of the backward mapping pose
+   */
+  private double getMatch(final EdgePoints edgePoints, final AffineMatrix forward, final double bestSoFar) {
     double sum = 0d;
-    for (final Point point : image1EdgePoints) {
-      sum += image2Distances[point.x][point.y];
+    for (int i = 0; i < edgePoints.count; i++) {
+      final int x = edgePoints.xs[i];
+      final int y = edgePoints.ys[i];
+      sum += distance(forward.mapX(x, y), forward.mapY(x, y));
+      if (sum >= bestSoFar) {
+        return sum; // distances are never negative
+      }
     }
-  
+    
     return sum;
   }
   
+  private void checkImage1(final Image image1) {
+    if (this.image1 == null) {
+      throw new IllegalStateException("Chamfer matching has to be initialized with the images first");
+    }
+    
+    if (image1 != this.image1) {
+      throw new IllegalStateException("Image 1 is not the image the distance map was calculated for");
+    }
+  }
+  
+  private void checkImages(final Image image1, final Image image2) {
+    checkImage1(image1);
+    if (image2 != this.image2) {
+      throw new IllegalStateException("Image 2 is not the image the edge points were collected from");
+    }
+  }
+  
+  private double distance(final double x, final double y) {
+    final int pixelX = (int) Math.floor(x + 0.5d);
+    final int pixelY = (int) Math.floor(y + 0.5d);
+    if (pixelX >= 0 && pixelX < width && pixelY >= 0 && pixelY < height) {
+      return image1Distances[pixelY * width + pixelX];
+    }
+    
+    final int borderX = Math.max(0, Math.min(width - 1, pixelX));
+    final int borderY = Math.max(0, Math.min(height - 1, pixelY));
+    return image1Distances[borderY * width + borderX] + Math.hypot(pixelX - borderX, pixelY - borderY);
+  }
+  
+  private static Image edges(final Image image) {
+    return image.edges().binary(new BinaryThreshold(1, 0, image.maxColor));
+  }
+  
+  /**
+   * Coordinates of the edge pixels of a binary edge image, packed into two arrays.
+   */
+  private static final class EdgePoints {
+    
+    private final int[] xs;
+    private final int[] ys;
+    private final int count;
+    
+    private EdgePoints(final Image edges) {
+      int[] xs = new int[64];
+      int[] ys = new int[64];
+      int count = 0;
+      for (int y = 0; y < edges.height; y++) {
+        for (int x = 0; x < edges.width; x++) {
+          if (edges.get(x, y) == edges.maxColor) {
+            if (count == xs.length) {
+              xs = Arrays.copyOf(xs, 2 * count);
+              ys = Arrays.copyOf(ys, 2 * count);
+            }
+            
+            xs[count] = x;
+            ys[count] = y;
+            count++;
+          }
+        }
+      }
+      
+      this.xs = xs;
+      this.ys = ys;
+      this.count = count;
+    }
+    
+  }
+  
 }
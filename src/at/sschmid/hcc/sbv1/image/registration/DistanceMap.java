@@ -1,33 +1,98 @@
 package at.sschmid.hcc.sbv1.image.registration;
 
 import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.utility.TileScheduler;
 
+/**
+ * Distance of every pixel to the nearest foreground pixel. {@link DistanceMetric#Manhattan} and
+ * {@link DistanceMetric#Euklid} use the two-pass 3x3 chamfer approximation, {@link DistanceMetric#EuklidExact}
+ * calculates exact Euclidean distances in linear time with the separable algorithm of Felzenszwalb and Huttenlocher
+ * (columns first, then the lower envelope of parabolas per row), both passes run in parallel. Without foreground
+ * pixels all distances are infinite.
+ */
 public final class DistanceMap {
   
+  public static final int DEFAULT_FOREGROUND = 255;
+  
+  private static final int INFINITE = Integer.MAX_VALUE;
+  
   private final Image image;
   private final DistanceMetric distanceMetric;
+  private final int foreground;
   
   private double[][] distanceMap;
+  private int[] squaredDistances;
   
   public DistanceMap(final Image image, final DistanceMetric distanceMetric) {
+    this(image, distanceMetric, DEFAULT_FOREGROUND);
+  }
+  
+  public DistanceMap(final Image image, final DistanceMetric distanceMetric, final int foreground) {
     this.image = image;
     this.distanceMetric = distanceMetric;
+    this.foreground = foreground;
   }
   
+  /**
+   * @return the distances indexed by [x][y]
+   */
   public double[][] calculate() {
     if (distanceMap == null) {
       distanceMap = new double[image.width][image.height];
   
-      // see also https://github.com/biometrics/imagingbook/blob/master/src/Chamfer_Matching.java
-      initContour();
-      topLeftToBottomRight();
-      bottomRightToTopLeft();
-//      cleanup();
+      if (distanceMetric == DistanceMetric.EuklidExact) {
+        final int[] squared = squaredDistances();
+        for (int x = 0; x < image.width; x++) {
+          for (int y = 0; y < image.height; y++) {
+            distanceMap[x][y] = distance(squared[y * image.width + x]);
+          }
+        }
+      } else {
+        // see also https://github.com/biometrics/imagingbook/blob/master/src/Chamfer_Matching.java
+        initContour();
+        topLeftToBottomRight();
+        bottomRightToTopLeft();
+//        cleanup();
+      }
     }
     
     return distanceMap;
   }
   
+  /**
+   * @return the distances as row-major float array (index y * width + x)
+   */
+  public float[] calculateFloat() {
+    final float[] result = new float[image.size];
+    if (distanceMetric == DistanceMetric.EuklidExact) {
+      final int[] squared = squaredDistances();
+      for (int i = 0; i < result.length; i++) {
+        result[i] = (float) distance(squared[i]);
+      }
+    } else {
+      final double[][] distances = calculate();
+      for (int y = 0; y < image.height; y++) {
+        for (int x = 0; x < image.width; x++) {
+          result[y * image.width + x] = (float) distances[x][y];
+        }
+      }
+    }
+    
+    return result;
+  }
+  
+  /**
+   * Exact squared Euclidean distances as row-major int array (index y * width + x), {@link Integer#MAX_VALUE} if there
+   * is no foreground pixel. Only available for {@link DistanceMetric#EuklidExact}.
+   */
+  public int[] calculateSquared() {
+    if (distanceMetric != DistanceMetric.EuklidExact) {
+      throw new IllegalArgumentException(String.format("Squared distances are not available for %s", distanceMetric));
+    }
+    
+    return squaredDistances().clone();
+  }
+  
   public Image asImage() {
     calculate();
   
@@ -36,7 +101,7 @@ public final class DistanceMap {
     for (int x = 0; x < image.width; x++) {
       for (int y = 0; y < image.height; y++) {
         final double color = distanceMap[x][y];
-        result.data[x][y] = color > image.maxColor ? image.maxColor : (int) (color + 0.5d);
+        result.set(x, y, color > image.maxColor ? image.maxColor : (int) (color + 0.5d));
       }
     }
   
@@ -46,9 +111,118 @@ public final class DistanceMap {
   private void initContour() {
     for (int x = 0; x < image.width; x++) {
       for (int y = 0; y < image.height; y++) {
-        distanceMap[x][y] = image.data[x][y] == 255 ? 0 : Double.POSITIVE_INFINITY;
+        distanceMap[x][y] = image.get(x, y) == foreground ? 0 : Double.POSITIVE_INFINITY;
+      }
+    }
+  }
+  
+  private int[] squaredDistances() {
+    if (squaredDistances == null) {
+      final int[] result = new int[image.size];
+      TileScheduler.shared().forEachTile(image.width, 1, (x0, y0, x1, y1) -> columnDistances(result, x0, x1));
+      TileScheduler.shared().forEachRows(image.height, (yStart, yEnd) -> {
+        final int[] row = new int[image.width];
+        final int[] sites = new int[image.width];
+        final double[] boundaries = new double[image.width + 1];
+        for (int y = yStart; y < yEnd; y++) {
+          rowDistances(result, y * image.width, row, sites, boundaries);
+        }
+      });
+      
+      squaredDistances = result;
+    }
+    
+    return squaredDistances;
+  }
+  
+  /**
+   * First pass: squared distance to the nearest foreground pixel in the same column, for the columns [x0;x1). Walks
+   * the rows of the band from top to bottom and back, so the array is accessed row by row.
+   */
+  private void columnDistances(final int[] result, final int x0, final int x1) {
+    final int width = image.width;
+    for (int y = 0; y < image.height; y++) {
+      for (int x = x0; x < x1; x++) {
+        final int i = y * width + x;
+        if (image.get(x, y) == foreground) {
+          result[i] = 0;
+        } else {
+          result[i] = y == 0 || result[i - width] == INFINITE ? INFINITE : result[i - width] + 1;
+        }
+      }
+    }
+    
+    for (int y = image.height - 2; y >= 0; y--) {
+      for (int x = x0; x < x1; x++) {
+        final int i = y * width + x;
+        final int below = result[i + width];
+        if (below != INFINITE && below + 1 < result[i]) {
+          result[i] = below + 1;
+        }
+      }
+    }
+    
+    for (int y = 0; y < image.height; y++) {
+      for (int x = x0; x < x1; x++) {
+        final int i = y * width + x;
+        if (result[i] != INFINITE) {
+          result[i] *= result[i];
+        }
+      }
+    }
+  }
+  
+  /**
+   * Second pass: lower envelope of the parabolas (x - site)^2 + f(site) of one row.
+   */
+  private void rowDistances(final int[] result,
+                            final int offset,
+                            final int[] row,
+                            final int[] sites,
+                            final double[] boundaries) {
+    final int width = image.width;
+    System.arraycopy(result, offset, row, 0, width);
+    
+    int k = -1;
+    for (int q = 0; q < width; q++) {
+      if (row[q] == INFINITE) {
+        continue;
       }
+      
+      double intersection = Double.NEGATIVE_INFINITY;
+      while (k >= 0) {
+        final int site = sites[k];
+        intersection = ((row[q] + (double) q * q) - (row[site] + (double) site * site)) / (2d * (q - site));
+        if (intersection > boundaries[k]) {
+          break;
+        }
+        
+        k--;
+      }
+      
+      k++;
+      sites[k] = q;
+      boundaries[k] = k == 0 ? Double.NEGATIVE_INFINITY : intersection;
+      boundaries[k + 1] = Double.POSITIVE_INFINITY;
     }
+    
+    if (k < 0) {
+      return; // no foreground pixel in any column, the row stays infinite
+    }
+    
+    int j = 0;
+    for (int q = 0; q < width; q++) {
+      while (boundaries[j + 1] < q) {
+        j++;
+      }
+      
+      final int dx = q - sites[j];
+      result[offset + q] = dx * dx + row[sites[j]];
+    }
+  }
+  
+  private static double distance(final int squaredDistance) {
+    return squaredDistance == INFINITE ? Double.POSITIVE_INFINITY : Math.sqrt(squaredDistance);
   }
   
   private void topLeftToBottomRight() {
@@ -2,7 +2,11 @@ package at.sschmid.hcc.sbv1.image.registration;
 
 public enum DistanceMetric {
   Manhattan(1, 2),
-  Euklid(1, Math.sqrt(2));
+  Euklid(1, Math.sqrt(2)),
+  /**
+   * Exact Euclidean distance, the weights are only those of a single step.
+   */
+  EuklidExact(1, Math.sqrt(2));
   
   public final double direct;
   public final double diagonal;
@@ -0,0 +1,44 @@
+package at.sschmid.hcc.sbv1.image.registration;
+
+/**
+ * Best-neighbour hill climber. Evaluates the 2n neighbours at +/- one step along every parameter and moves to the
+ * best of them. If no neighbour is better, all steps are halved. The search ends when the steps have shrunk below
+ * the relative tolerance of the initial steps.
+ */
+final class HillClimbingOptimizer extends AbstractOptimizer {
+  
+  HillClimbingOptimizer() {
+    // nothing to do
+  }
+  
+  @Override
+  void search(final Evaluations evaluations, final double[] start, final double[] steps, final double tolerance) {
+    final int n = start.length;
+    double[] point = start;
+    double value = evaluations.evaluate(point);
+    double stepScale = 1d;
+    while (stepScale > tolerance && !evaluations.exhausted()) {
+      double[] bestNeighbour = null;
+      double bestNeighbourValue = value;
+      for (int i = 0; i < n; i++) {
+        for (int direction = -1; direction <= 1; direction += 2) {
+          final double[] neighbour = point.clone();
+          neighbour[i] += direction * stepScale * steps[i];
+          final double neighbourValue = evaluations.evaluate(neighbour);
+          if (evaluations.isBetter(neighbourValue, bestNeighbourValue)) {
+            bestNeighbour = neighbour;
+            bestNeighbourValue = neighbourValue;
+          }
+        }
+      }
+      
+      if (bestNeighbour != null) {
+        point = bestNeighbour;
+        value = bestNeighbourValue;
+      } else {
+        stepScale /= 2d;
+      }
+    }
+  }
+  
+}
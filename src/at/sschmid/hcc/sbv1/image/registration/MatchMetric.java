@@ -1,6 +1,8 @@
 package at.sschmid.hcc.sbv1.image.registration;
 
 import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.image.resampling.AffineMatrix;
+import at.sschmid.hcc.sbv1.image.resampling.Interpolation;
 
 @FunctionalInterface
 public interface MatchMetric {
@@ -25,6 +27,16 @@ public interface MatchMetric {
     return impl;
   }
   
+  /**
+   * Mutual information with the colors of each image grouped into {@code bins} bins, which makes the joint histogram
+   * smaller and less sparse.
+   */
+  static MatchMetric mutualInformation(final int bins, final Image image1, final Image image2) {
+    final MatchMetric impl = new MutualInformationMetric(bins);
+    impl.init(image1, image2);
+    return impl;
+  }
+  
   default void init(final Image image1, final Image image2) {
     // nothing to do
   }
@@ -35,4 +47,28 @@ public interface MatchMetric {
   
   double getMatch(final Image image1, final Image image2);
   
+  /**
+   * Scores {@code image2}, sampled with the backward mapping {@code pose} (nearest neighbour), against {@code image1}.
+   * The default resamples {@code image2} first, metrics that can sample on the fly override this to skip the
+   * intermediate image.
+   */
+  default double getMatch(final Image image1, final Image image2, final AffineMatrix pose) {
+    return getMatch(image1, image2.transformation().transform(pose, Interpolation.Mode.NearestNeighbour).getResult());
+  }
+  
+  /**
+   * Bounded variant of {@link #getMatch(Image, Image)}: as soon as {@code image2} cannot be better than
+   * {@code bestSoFar} anymore, a metric may stop and return any value that is not better than {@code bestSoFar}.
+   */
+  default double getMatch(final Image image1, final Image image2, final double bestSoFar) {
+    return getMatch(image1, image2);
+  }
+  
+  /**
+   * Bounded variant of {@link #getMatch(Image, Image, AffineMatrix)}, see {@link #getMatch(Image, Image, double)}.
+   */
+  default double getMatch(final Image image1, final Image image2, final AffineMatrix pose, final double bestSoFar) {
+    return getMatch(image1, image2, pose);
+  }
+  
 }
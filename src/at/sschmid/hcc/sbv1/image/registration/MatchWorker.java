@@ -1,10 +1,12 @@
 package at.sschmid.hcc.sbv1.image.registration;
 
 import at.sschmid.hcc.sbv1.image.Image;
-import at.sschmid.hcc.sbv1.image.resampling.Interpolation;
+import at.sschmid.hcc.sbv1.image.resampling.AffineMatrix;
 import at.sschmid.hcc.sbv1.image.resampling.Transformations;
 
-final class MatchWorker implements Runnable {
+import java.util.concurrent.Callable;
+
+final class MatchWorker implements Callable<Double> {
   
   static Builder create() {
     return new Builder();
@@ -17,8 +19,7 @@ final class MatchWorker implements Runnable {
   private double ty;
   private double rot;
   private Transformations transformations;
-  
-  private double match;
+  private double bestSoFar;
   
   private MatchWorker(final Image image,
                       final Image transformedImage,
@@ -26,7 +27,8 @@ final class MatchWorker implements Runnable {
                       final double tx,
                       final double ty,
                       final double rot,
-                      final Transformations transformations) {
+                      final Transformations transformations,
+                      final double bestSoFar) {
     this.image = image;
     this.transformedImage = transformedImage;
     this.matchMetric = matchMetric;
@@ -34,16 +36,13 @@ final class MatchWorker implements Runnable {
     this.ty = ty;
     this.rot = rot;
     this.transformations = transformations;
+    this.bestSoFar = bestSoFar;
   }
   
   Transformations getTransformations() {
     return transformations;
   }
   
-  double getMatch() {
-    return match;
-  }
-  
   double getTx() {
     return tx;
   }
@@ -57,12 +56,11 @@ final class MatchWorker implements Runnable {
   }
   
   @Override
-  public void run() {
-    Image testImage = transformedImage.transformation()
-        .transform(transformations, Interpolation.Mode.NearestNeighbour)
-        .getResult();
-  
-    match = matchMetric.getMatch(image, testImage);
+  public Double call() {
+    final AffineMatrix pose = transformations.toMatrix(transformedImage.width, transformedImage.height);
+    return Double.isNaN(bestSoFar)
+        ? matchMetric.getMatch(image, transformedImage, pose)
+        : matchMetric.getMatch(image, transformedImage, pose, bestSoFar);
   }
   
   final static class Builder {
@@ -74,6 +72,7 @@ final class MatchWorker implements Runnable {
     private double ty;
     private double rot;
     private Transformations transformations;
+    private double bestSoFar = Double.NaN;
     
     Builder withImage(final Image image) {
       this.image = image;
@@ -110,8 +109,16 @@ final class MatchWorker implements Runnable {
       return this;
     }
   
+    /**
+     * Allows the metric to stop early once the candidate cannot beat {@code bestSoFar}.
+     */
+    Builder withBestSoFar(final double bestSoFar) {
+      this.bestSoFar = bestSoFar;
+      return this;
+    }
+    
     MatchWorker build() {
-      return new MatchWorker(image, transformedImage, matchMetric, tx, ty, rot, transformations);
+      return new MatchWorker(image, transformedImage, matchMetric, tx, ty, rot, transformations, bestSoFar);
     }
     
   }
@@ -1,18 +1,72 @@
 package at.sschmid.hcc.sbv1.image.registration;
 
 import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.image.PixelBuffer;
+import at.sschmid.hcc.sbv1.image.resampling.AffineMatrix;
+import at.sschmid.hcc.sbv1.image.resampling.Interpolation;
+import at.sschmid.hcc.sbv1.utility.Utility;
 
+/**
+ * Mutual information I(1;2) = H(1) + H(2) - H(1,2). The marginal and the joint histogram are filled in a single pass
+ * into reusable buffers of the calling thread, entropies are calculated as H = log2(n) - sum(n_i * log2(n_i)) / n with
+ * a precomputed n * log2(n) table. Colors can optionally be grouped into fewer bins.
+ */
 final class MutualInformationMetric implements MatchMetric {
   
-  private double image1Entropy;
+  private static final int N_LOG_N_TABLE_SIZE = 1 << 16;
+  private static final double[] N_LOG_N = new double[N_LOG_N_TABLE_SIZE];
+  
+  static {
+    for (int n = 1; n < N_LOG_N_TABLE_SIZE; n++) {
+      N_LOG_N[n] = n * Utility.binLog(n);
+    }
+  }
+  
+  private final int bins;
+  
+  private int[] binsOfColor1;
+  private int[] binsOfColor2;
+  private int bins2;
+  private double image1NLogNSum;
+  private ThreadLocal<Histograms> histograms;
   
   MutualInformationMetric() {
-    // nothing to do
+    this(0);
+  }
+  
+  /**
+   * @param bins number of histogram bins per image, 0 uses one bin per color
+   */
+  MutualInformationMetric(final int bins) {
+    if (bins < 0) {
+      throw new IllegalArgumentException("Number of bins must not be negative");
+    }
+    
+    this.bins = bins;
   }
   
   @Override
   public void init(final Image image1, final Image image2) {
-    image1Entropy = image1.entropy();
+    binsOfColor1 = binsOfColor(image1.maxColor);
+    binsOfColor2 = binsOfColor(image2.maxColor);
+    final int bins1 = binsOfColor1[image1.maxColor] + 1;
+    bins2 = binsOfColor2[image2.maxColor] + 1;
+    
+    // image 1 is not transformed, so its entropy is the same for all candidates
+    final int[] histogram1 = new int[bins1];
+    final PixelBuffer pixels1 = image1.pixels;
+    for (int y = 0; y < image1.height; y++) {
+      final int offset1 = pixels1.index(0, y);
+      for (int x = 0; x < image1.width; x++) {
+        histogram1[binsOfColor1[pixels1.get(offset1 + x)]]++;
+      }
+    }
+    
+    image1NLogNSum = sumOfNLogNAndClear(histogram1);
+    
+    final int jointSize = bins1 * bins2;
+    final int histogramSize = bins2;
+    histograms = ThreadLocal.withInitial(() -> new Histograms(jointSize, histogramSize));
   }
   
   @Override
@@ -22,7 +76,72 @@ final class MutualInformationMetric implements MatchMetric {
   
   @Override
   public double getMatch(final Image image1, final Image image2) {
-    return image2.entropy() + image1Entropy - image1.entropy2d(image2);
+    return getMatch(image1, image2, AffineMatrix.identity());
+  }
+  
+  @Override
+  public double getMatch(final Image image1, final Image image2, final AffineMatrix pose) {
+    final PixelBuffer pixels1 = image1.pixels;
+    final PixelBuffer pixels2 = image2.pixels;
+    final Histograms buffers = histograms.get();
+    final int[] histogram2 = buffers.histogram2;
+    final int[] jointHistogram = buffers.joint;
+    for (int y = 0; y < image1.height; y++) {
+      final int offset1 = pixels1.index(0, y);
+      double sourceX = pose.mapX(0, y);
+      double sourceY = pose.mapY(0, y);
+      for (int x = 0; x < image1.width; x++) {
+        final int bin2 = binsOfColor2[Interpolation.nearestNeighbour(pixels2, sourceX, sourceY)];
+        histogram2[bin2]++;
+        jointHistogram[binsOfColor1[pixels1.get(offset1 + x)] * bins2 + bin2]++;
+        sourceX += pose.m00;
+        sourceY += pose.m10;
+      }
+    }
+    
+    final double count = image1.size;
+    final double sum2 = sumOfNLogNAndClear(histogram2);
+    final double jointSum = sumOfNLogNAndClear(jointHistogram);
+    return Utility.binLog(count) - (image1NLogNSum + sum2 - jointSum) / count;
+  }
+  
+  private int[] binsOfColor(final int maxColor) {
+    final int colors = maxColor + 1;
+    final int binCount = bins == 0 ? colors : Math.min(bins, colors);
+    final int[] result = new int[colors];
+    for (int color = 0; color < colors; color++) {
+      result[color] = (int) ((long) color * binCount / colors);
+    }
+    
+    return result;
+  }
+  
+  /**
+   * @return the sum of n * log2(n) over all bins, the histogram is reset for the next candidate
+   */
+  private static double sumOfNLogNAndClear(final int[] histogram) {
+    double sum = 0d;
+    for (int i = 0; i < histogram.length; i++) {
+      final int n = histogram[i];
+      if (n > 0) {
+        sum += n < N_LOG_N_TABLE_SIZE ? N_LOG_N[n] : n * Utility.binLog(n);
+        histogram[i] = 0;
+      }
+    }
+    
+    return sum;
+  }
+  
+  private static final class Histograms {
+    
+    private final int[] joint;
+    private final int[] histogram2;
+    
+    private Histograms(final int jointSize, final int histogram2Size) {
+      this.joint = new int[jointSize];
+      this.histogram2 = new int[histogram2Size];
+    }
+    
   }
   
 }
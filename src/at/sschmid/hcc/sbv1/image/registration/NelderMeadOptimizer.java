@@ -0,0 +1,110 @@
+package at.sschmid.hcc.sbv1.image.registration;
+
+/**
+ * Downhill simplex method of Nelder and Mead. The initial simplex spans {@code steps} around the start point, the
+ * search ends when the values of the best and the worst vertex differ by less than the relative tolerance.
+ */
+final class NelderMeadOptimizer extends AbstractOptimizer {
+  
+  private static final double REFLECTION = 1d;
+  private static final double EXPANSION = 2d;
+  private static final double CONTRACTION = 0.5d;
+  private static final double SHRINK = 0.5d;
+  
+  NelderMeadOptimizer() {
+    // nothing to do
+  }
+  
+  @Override
+  void search(final Evaluations evaluations, final double[] start, final double[] steps, final double tolerance) {
+    final int n = start.length;
+    final double[][] simplex = new double[n + 1][];
+    final double[] values = new double[n + 1];
+    simplex[0] = start;
+    values[0] = evaluations.evaluate(start);
+    for (int i = 0; i < n; i++) {
+      simplex[i + 1] = start.clone();
+      simplex[i + 1][i] += steps[i];
+      values[i + 1] = evaluations.evaluate(simplex[i + 1]);
+    }
+    
+    while (!evaluations.exhausted()) {
+      sort(evaluations, simplex, values);
+      if (converged(values[0], values[n], tolerance)) {
+        return;
+      }
+      
+      // centroid of all vertices but the worst
+      final double[] centroid = new double[n];
+      for (int i = 0; i < n; i++) {
+        for (int j = 0; j < n; j++) {
+          centroid[j] += simplex[i][j] / n;
+        }
+      }
+      
+      final double[] reflected = along(centroid, simplex[n], -REFLECTION);
+      final double reflectedValue = evaluations.evaluate(reflected);
+      if (evaluations.isBetter(reflectedValue, values[0])) {
+        final double[] expanded = along(centroid, simplex[n], -EXPANSION);
+        final double expandedValue = evaluations.evaluate(expanded);
+        if (evaluations.isBetter(expandedValue, reflectedValue)) {
+          simplex[n] = expanded;
+          values[n] = expandedValue;
+        } else {
+          simplex[n] = reflected;
+          values[n] = reflectedValue;
+        }
+      } else if (evaluations.isBetter(reflectedValue, values[n - 1])) {
+        simplex[n] = reflected;
+        values[n] = reflectedValue;
+      } else {
+        final boolean outside = evaluations.isBetter(reflectedValue, values[n]);
+        final double[] contracted = outside
+            ? along(centroid, simplex[n], -CONTRACTION)
+            : along(centroid, simplex[n], CONTRACTION);
+        final double contractedValue = evaluations.evaluate(contracted);
+        if (evaluations.isBetter(contractedValue, outside ? reflectedValue : values[n])) {
+          simplex[n] = contracted;
+          values[n] = contractedValue;
+        } else {
+          for (int i = 1; i <= n; i++) {
+            simplex[i] = along(simplex[0], simplex[i], SHRINK);
+            values[i] = evaluations.evaluate(simplex[i]);
+          }
+        }
+      }
+    }
+  }
+  
+  /**
+   * @return origin + factor * (point - origin)
+   */
+  private static double[] along(final double[] origin, final double[] point, final double factor) {
+    final double[] result = new double[origin.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = origin[i] + factor * (point[i] - origin[i]);
+    }
+    
+    return result;
+  }
+  
+  /**
+   * Insertion sort from the best to the worst vertex, the simplex only has n + 1 vertices.
+   */
+  private static void sort(final Evaluations evaluations, final double[][] simplex, final double[] values) {
+    for (int i = 1; i < values.length; i++) {
+      final double[] vertex = simplex[i];
+      final double value = values[i];
+      int j = i - 1;
+      while (j >= 0 && evaluations.isBetter(value, values[j])) {
+        simplex[j + 1] = simplex[j];
+        values[j + 1] = values[j];
+        j--;
+      }
+      
+      simplex[j + 1] = vertex;
+      values[j + 1] = value;
+    }
+  }
+  
+}
@@ -0,0 +1,67 @@
+package at.sschmid.hcc.sbv1.image.registration;
+
+import java.util.Arrays;
+
+/**
+ * Gradient-free local optimizer for registration parameters. An optimizer starts at {@code start}, uses
+ * {@code steps} as the initial scale of every parameter and stops after {@code maxEvaluations} objective evaluations
+ * or once it has converged according to {@code tolerance}.
+ */
+public interface Optimizer {
+  
+  static Optimizer nelderMead() {
+    return new NelderMeadOptimizer();
+  }
+  
+  static Optimizer powell() {
+    return new PowellOptimizer();
+  }
+  
+  static Optimizer hillClimber() {
+    return new HillClimbingOptimizer();
+  }
+  
+  Result optimize(final Objective objective,
+                  final double[] start,
+                  final double[] steps,
+                  final int maxEvaluations,
+                  final double tolerance);
+  
+  @FunctionalInterface
+  interface Objective {
+    
+    double evaluate(final double[] parameters);
+    
+    default boolean isBetter(final double value, final double bestValue) {
+      return value < bestValue;
+    }
+    
+  }
+  
+  final class Result {
+    
+    public final double[] parameters;
+    public final double value;
+    public final int evaluations;
+    
+    Result(final double[] parameters, final double value, final int evaluations) {
+      this.parameters = parameters;
+      this.value = value;
+      this.evaluations = evaluations;
+    }
+    
+    @Override
+    public String toString() {
+      return new StringBuilder("Result { parameters=")
+          .append(Arrays.toString(parameters))
+          .append(", value=")
+          .append(value)
+          .append(", evaluations=")
+          .append(evaluations)
+          .append(" }")
+          .toString();
+    }
+    
+  }
+  
+}
@@ -0,0 +1,165 @@
+package at.sschmid.hcc.sbv1.image.registration;
+
+/**
+ * Powell's conjugate direction method. Starts with the parameter axes (scaled by {@code steps}) as search directions
+ * and runs a golden section line search along each of them. After every iteration the direction of the largest
+ * improvement is replaced by the overall displacement of the iteration. The search ends when an iteration improves
+ * the value by less than the relative tolerance.
+ */
+final class PowellOptimizer extends AbstractOptimizer {
+  
+  private static final double GOLDEN_RATIO = (Math.sqrt(5d) - 1d) / 2d;
+  private static final double LINE_TOLERANCE = 1e-3d;
+  private static final int MAX_BRACKET_EXPANSIONS = 16;
+  
+  PowellOptimizer() {
+    // nothing to do
+  }
+  
+  @Override
+  void search(final Evaluations evaluations, final double[] start, final double[] steps, final double tolerance) {
+    final int n = start.length;
+    final double[][] directions = new double[n][n];
+    for (int i = 0; i < n; i++) {
+      directions[i][i] = steps[i];
+    }
+    
+    double[] point = start;
+    double value = evaluations.evaluate(point);
+    while (!evaluations.exhausted()) {
+      final double[] iterationStart = point;
+      final double iterationStartValue = value;
+      int largestImprovementDirection = 0;
+      double largestImprovement = 0d;
+      for (int i = 0; i < n; i++) {
+        final LinePoint linePoint = lineSearch(evaluations, point, value, directions[i]);
+        final double improvement = Math.abs(value - linePoint.value);
+        if (improvement > largestImprovement) {
+          largestImprovement = improvement;
+          largestImprovementDirection = i;
+        }
+        
+        point = linePoint.point;
+        value = linePoint.value;
+      }
+      
+      if (converged(iterationStartValue, value, tolerance)) {
+        return;
+      }
+      
+      final double[] displacement = new double[n];
+      for (int i = 0; i < n; i++) {
+        displacement[i] = point[i] - iterationStart[i];
+      }
+      
+      final LinePoint linePoint = lineSearch(evaluations, point, value, displacement);
+      point = linePoint.point;
+      value = linePoint.value;
+      directions[largestImprovementDirection] = displacement;
+    }
+  }
+  
+  /**
+   * Brackets an improvement along {@code direction} by doubling the step and narrows it down with a golden section
+   * search.
+   */
+  private static LinePoint lineSearch(final Evaluations evaluations,
+                                      final double[] origin,
+                                      final double originValue,
+                                      final double[] direction) {
+    double lower;
+    double upper;
+    double best = 0d;
+    double bestValue = originValue;
+    
+    final double forwardValue = evaluations.evaluate(pointAt(origin, direction, 1d));
+    if (evaluations.isBetter(forwardValue, originValue)) {
+      best = 1d;
+      bestValue = forwardValue;
+    } else {
+      final double backwardValue = evaluations.evaluate(pointAt(origin, direction, -1d));
+      if (evaluations.isBetter(backwardValue, originValue)) {
+        best = -1d;
+        bestValue = backwardValue;
+      }
+    }
+    
+    if (best == 0d) {
+      // the optimum is within one step around the origin
+      lower = -1d;
+      upper = 1d;
+    } else {
+      int expansions = 0;
+      while (expansions++ < MAX_BRACKET_EXPANSIONS) {
+        final double next = 2d * best;
+        final double nextValue = evaluations.evaluate(pointAt(origin, direction, next));
+        if (!evaluations.isBetter(nextValue, bestValue)) {
+          break;
+        }
+        
+        best = next;
+        bestValue = nextValue;
+      }
+      
+      // the best point lies between its predecessor and its successor of the doubling sequence
+      final double inner = Math.abs(best) == 1d ? 0d : best / 2d;
+      lower = Math.min(inner, 2d * best);
+      upper = Math.max(inner, 2d * best);
+    }
+    
+    // golden section search on [lower; upper]
+    double x1 = upper - GOLDEN_RATIO * (upper - lower);
+    double x2 = lower + GOLDEN_RATIO * (upper - lower);
+    double value1 = evaluations.evaluate(pointAt(origin, direction, x1));
+    double value2 = evaluations.evaluate(pointAt(origin, direction, x2));
+    while (upper - lower > LINE_TOLERANCE) {
+      if (evaluations.isBetter(value1, value2)) {
+        upper = x2;
+        x2 = x1;
+        value2 = value1;
+        x1 = upper - GOLDEN_RATIO * (upper - lower);
+        value1 = evaluations.evaluate(pointAt(origin, direction, x1));
+      } else {
+        lower = x1;
+        x1 = x2;
+        value1 = value2;
+        x2 = lower + GOLDEN_RATIO * (upper - lower);
+        value2 = evaluations.evaluate(pointAt(origin, direction, x2));
+      }
+    }
+    
+    if (evaluations.isBetter(value1, bestValue)) {
+      best = x1;
+      bestValue = value1;
+    }
+    
+    if (evaluations.isBetter(value2, bestValue)) {
+      best = x2;
+      bestValue = value2;
+    }
+    
+    return new LinePoint(pointAt(origin, direction, best), bestValue);
+  }
+  
+  private static double[] pointAt(final double[] origin, final double[] direction, final double t) {
+    final double[] result = new double[origin.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = origin[i] + t * direction[i];
+    }
+    
+    return result;
+  }
+  
+  private static final class LinePoint {
+    
+    private final double[] point;
+    private final double value;
+    
+    private LinePoint(final double[] point, final double value) {
+      this.point = point;
+      this.value = value;
+    }
+    
+  }
+  
+}
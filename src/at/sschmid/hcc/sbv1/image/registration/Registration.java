@@ -1,16 +1,20 @@
 package at.sschmid.hcc.sbv1.image.registration;
 
+import at.sschmid.hcc.sbv1.image.GaussianPyramid;
 import at.sschmid.hcc.sbv1.image.Image;
 import at.sschmid.hcc.sbv1.image.resampling.Transformations;
 import at.sschmid.hcc.sbv1.utility.Utility;
 import ij.IJ;
 
-import java.util.Deque;
-import java.util.LinkedList;
-import java.util.concurrent.ExecutorService;
+import java.util.ArrayList;
+import java.util.List;
 
 public final class Registration {
   
+  private static final int REFINEMENT_RADIUS = 2;
+  private static final int DEFAULT_MAX_EVALUATIONS = 500;
+  private static final double DEFAULT_TOLERANCE = 1e-4d;
+  
   public static Builder create() {
     return new Builder();
   }
@@ -22,6 +26,10 @@ public final class Registration {
   private final double stepWidthRotation;
   private final int maxOptimizationRuns;
   private final double scalePerRun;
+  private final int pyramidLevels;
+  private final Optimizer optimizer;
+  private final int maxEvaluations;
+  private final double tolerance;
   
   private int optimizationRuns;
   
@@ -31,7 +39,11 @@ public final class Registration {
                        final double stepWidthTranslation,
                        final double stepWidthRotation,
                        final int maxOptimizationRuns,
-                       final double scalePerRun) {
+                       final double scalePerRun,
+                       final int pyramidLevels,
+                       final Optimizer optimizer,
+                       final int maxEvaluations,
+                       final double tolerance) {
     if (matchMetric == null
         || searchRadiusTranslation <= 0
         || searchRadiusRotation <= 0
@@ -39,7 +51,10 @@ public final class Registration {
         || stepWidthRotation < 0
         || maxOptimizationRuns <= 0
         || scalePerRun <= 0
-        || scalePerRun > 1) {
+        || scalePerRun > 1
+        || pyramidLevels <= 0
+        || maxEvaluations <= 0
+        || tolerance < 0) {
       throw new IllegalArgumentException();
     }
     
@@ -50,6 +65,10 @@ public final class Registration {
     this.stepWidthRotation = stepWidthRotation;
     this.maxOptimizationRuns = maxOptimizationRuns;
     this.scalePerRun = scalePerRun;
+    this.pyramidLevels = pyramidLevels;
+    this.optimizer = optimizer;
+    this.maxEvaluations = maxEvaluations;
+    this.tolerance = tolerance;
   }
   
   public int getOptimizationRuns() {
@@ -57,89 +76,130 @@ public final class Registration {
   }
   
   public Transformations register(final Image image, final Image transformedImage) {
+    optimizationRuns = 0;
+    if (pyramidLevels == 1) {
+      final Pose pose = register(image,
+          transformedImage,
+          Pose.IDENTITY,
+          searchRadiusTranslation,
+          searchRadiusRotation,
+          1);
+      return pose.isIdentity() ? null : pose.toTransformations();
+    }
+    
+    final GaussianPyramid pyramid = image.pyramid(pyramidLevels);
+    final GaussianPyramid transformedPyramid = transformedImage.pyramid(pyramid.levels());
+    
+    // global search on the coarsest level, each finer level only refines the pose of the level above
+    Pose pose = Pose.IDENTITY;
+    for (int level = pyramid.levels() - 1; level >= 0; level--) {
+      final boolean coarsest = level == pyramid.levels() - 1;
+      final Image levelImage = pyramid.level(level);
+      final Image levelTransformedImage = transformedPyramid.level(level);
+      IJ.log(String.format("Pyramid level %d (%dx%d)", level, levelImage.width, levelImage.height));
+      
+      matchMetric.init(levelImage, levelTransformedImage);
+      pose = register(levelImage,
+          levelTransformedImage,
+          coarsest ? pose : pose.scale(2d),
+          coarsest ? searchRadiusTranslation : Math.min(searchRadiusTranslation, REFINEMENT_RADIUS),
+          coarsest ? searchRadiusRotation : Math.min(searchRadiusRotation, REFINEMENT_RADIUS),
+          1 << level);
+    }
+    
+    if (pose.isIdentity()) {
+      return null;
+    }
+    
+    // the coarse levels may have moved away from the identity, only return the pose if it is the better match
+    final Transformations bestTransformations = pose.toTransformations();
+    final double identityMatch = matchMetric.getMatch(image, transformedImage);
+    final double bestMatch = matchMetric.getMatch(image,
+        transformedImage,
+        bestTransformations.toMatrix(transformedImage.width, transformedImage.height));
+    return matchMetric.isBetter(bestMatch, identityMatch) ? bestTransformations : null;
+  }
+  
+  private Pose register(final Image image,
+                        final Image transformedImage,
+                        final Pose start,
+                        final int searchRadiusTranslation,
+                        final int searchRadiusRotation,
+                        final int levelScale) {
+    if (optimizer != null) {
+      return optimize(image, transformedImage, start, levelScale);
+    }
+    
     // fully automated registration:
-    double stepWidthTranslation = this.stepWidthTranslation;
+    // translations are searched in pixels of the current level, step widths are given for the original image
+    double stepWidthTranslation = this.stepWidthTranslation / levelScale;
     double stepWidthRotation = this.stepWidthRotation;
+    int radiusTranslation = searchRadiusTranslation;
+    
+    // sub-pixel steps on a coarse level mostly resample the same images again, so the same range is covered with
+    // steps of at least one pixel and accordingly fewer candidates
+    final double minStepWidthTranslation = levelScale > 1 ? 1d : 0d;
+    if (stepWidthTranslation < minStepWidthTranslation) {
+      radiusTranslation = Math.max(1, (int) Math.ceil(searchRadiusTranslation * stepWidthTranslation));
+      stepWidthTranslation = minStepWidthTranslation;
+    }
     
     // first run
     // overall number of tested images = 21 * 21 * 21 = 9,261 Bilder (~1 Minute)
     // search space for Tx = [-20;20], namely -20, -18, -16, ..., 0, ..., 16, 18, 20 (due to step width)
     // expected result after run #1: tx=3, ty=-8, rot=12
     
-    double bestTx = 0;
-    double bestTy = 0;
-    double bestRot = 0;
-    double initialMatch = matchMetric.getMatch(image, transformedImage);
-    Transformations bestTransformations = null;
+    final double initialMatch = matchMetric.getMatch(image,
+        transformedImage,
+        start.toTransformations().toMatrix(transformedImage.width, transformedImage.height));
+    Pose bestPose = start;
     double bestMatch = initialMatch;
     
-    // offsets for further runs
-    double currMidTx = 0;
-    double currMidTy = 0;
-    double currMidRot = 0;
-  
-    for (optimizationRuns = 0; optimizationRuns < maxOptimizationRuns; optimizationRuns++) {
-      ExecutorService threadPool = Utility.threadPool();
-      final Deque<MatchWorker> matchWorkers = new LinkedList<>();
+    for (int run = 0; run < maxOptimizationRuns; run++, optimizationRuns++) {
+      final List<Pose> poses = new ArrayList<>();
+      final List<MatchWorker> matchWorkers = new ArrayList<>();
       final MatchWorker.Builder matchWorkerBuilder = MatchWorker.create()
           .withImage(image)
           .withTransformedImage(transformedImage)
-          .withMatchMetric(matchMetric);
-    
-      for (int xIdx = -searchRadiusTranslation; xIdx < searchRadiusTranslation; xIdx++) {
-        for (int yIdx = -searchRadiusTranslation; yIdx < searchRadiusTranslation; yIdx++) {
+          .withMatchMetric(matchMetric)
+          .withBestSoFar(bestMatch); // only candidates that beat the previous run are of interest
+      
+      for (int xIdx = -radiusTranslation; xIdx < radiusTranslation; xIdx++) {
+        for (int yIdx = -radiusTranslation; yIdx < radiusTranslation; yIdx++) {
           for (int rotIdx = -searchRadiusRotation; rotIdx < searchRadiusRotation; rotIdx++) {
-            final double currTx = currMidTx + xIdx * stepWidthTranslation;
-            final double currTy = currMidTy + yIdx * stepWidthTranslation;
-            final double currRot = currMidRot + rotIdx * stepWidthRotation;
-  
-            matchWorkerBuilder.withTx(currTx).withTy(currTy).withRot(currRot);
-  
-            if (currTx == 0 && currTy == 0 && currRot != 0) {
-              final MatchWorker mwRotationOnly = matchWorkerBuilder
-                  .withTransformations(new Transformations().rotate(currRot))
-                  .build();
-              threadPool.execute(mwRotationOnly);
-              matchWorkers.addFirst(mwRotationOnly);
-              
-            } else if ((currTx != 0 || currTy != 0) && currRot == 0) {
-              final MatchWorker mwTranslationOnly = matchWorkerBuilder
-                  .withTransformations(new Transformations().translate(currTx, currTy))
-                  .build();
-              threadPool.execute(mwTranslationOnly);
-              matchWorkers.addFirst(mwTranslationOnly);
-              
-            } else {
-              final MatchWorker mw1 = matchWorkerBuilder
-                  .withTransformations(new Transformations().translate(currTx, currTy).rotate(currRot))
-                  .build();
-              threadPool.execute(mw1);
-              matchWorkers.addFirst(mw1);
-    
-              final MatchWorker mw2 = matchWorkerBuilder
-                  .withTransformations(new Transformations().rotate(currRot).translate(currTx, currTy))
-                  .build();
-              threadPool.execute(mw2);
-              matchWorkers.addFirst(mw2);
+            final double currTx = bestPose.tx + xIdx * stepWidthTranslation;
+            final double currTy = bestPose.ty + yIdx * stepWidthTranslation;
+            final double currRot = bestPose.rot + rotIdx * stepWidthRotation;
+            
+            poses.add(new Pose(currTx, currTy, currRot, false));
+            if ((currTx != 0 || currTy != 0) && currRot != 0) {
+              // translation and rotation do not commute, so both orders are candidates
+              poses.add(new Pose(currTx, currTy, currRot, true));
             }
           }
         }
       }
-    
-      Utility.join(threadPool);
-    
+      
+      for (final Pose pose : poses) {
+        matchWorkers.add(matchWorkerBuilder.withTx(pose.tx)
+            .withTy(pose.ty)
+            .withRot(pose.rot)
+            .withTransformations(pose.toTransformations())
+            .build());
+      }
+      
+      final List<Double> matches = Utility.invokeAll(matchWorkers);
+      
       double newBestMatch = bestMatch;
-      for (final MatchWorker matchWorker : matchWorkers) {
-        final double match = matchWorker.getMatch();
+      Pose newBestPose = bestPose;
+      for (int i = 0; i < matches.size(); i++) {
+        final double match = matches.get(i);
         if (matchMetric.isBetter(match, newBestMatch)) {
           newBestMatch = match;
-          bestTx = matchWorker.getTx();
-          bestTy = matchWorker.getTy();
-          bestRot = matchWorker.getRot();
-          bestTransformations = matchWorker.getTransformations();
+          newBestPose = poses.get(i);
         }
       }
-    
+      
       IJ.log(String.format("Run #%d: %.5f (%s%.5f; absolute diff = %s%.5f%%)",
           optimizationRuns + 1,
           newBestMatch,
@@ -147,19 +207,47 @@ public final class Registration {
           Math.abs(newBestMatch - bestMatch),
           newBestMatch - bestMatch >= 0 ? "+" : "-",
           Math.abs(newBestMatch - initialMatch) / initialMatch * 100));
-    
+      
       bestMatch = newBestMatch;
+      bestPose = newBestPose;
       
       // prepare next run - decrease search area from global search to local search
-      stepWidthTranslation *= scalePerRun;
+      stepWidthTranslation = Math.max(minStepWidthTranslation, stepWidthTranslation * scalePerRun);
       stepWidthRotation *= scalePerRun;
-      
-      currMidTx = bestTx;
-      currMidTy = bestTy;
-      currMidRot = bestRot;
     }
     
-    return bestTransformations != null ? bestTransformations.reset() : null;
+    return bestPose;
+  }
+  
+  private Pose optimize(final Image image, final Image transformedImage, final Pose start, final int levelScale) {
+    final Optimizer.Objective objective = new Optimizer.Objective() {
+      
+      @Override
+      public double evaluate(final double[] parameters) {
+        final Transformations transformations = new Pose(parameters[0], parameters[1], parameters[2], false)
+            .toTransformations();
+        return matchMetric.getMatch(image,
+            transformedImage,
+            transformations.toMatrix(transformedImage.width, transformedImage.height));
+      }
+      
+      @Override
+      public boolean isBetter(final double value, final double bestValue) {
+        return matchMetric.isBetter(value, bestValue);
+      }
+      
+    };
+    
+    // optimizers only use translate-then-rotate poses, which cover every rigid transformation
+    final Optimizer.Result result = optimizer.optimize(objective,
+        new double[] { start.tx, start.ty, start.rot },
+        new double[] { stepWidthTranslation / levelScale, stepWidthTranslation / levelScale, stepWidthRotation },
+        maxEvaluations,
+        tolerance);
+    
+    optimizationRuns++;
+    IJ.log(String.format("Run #%d: %.5f (%d evaluations)", optimizationRuns, result.value, result.evaluations));
+    return new Pose(result.parameters[0], result.parameters[1], result.parameters[2], false);
   }
   
   public static class Builder {
@@ -171,6 +259,10 @@ public final class Registration {
     private double stepWidthRotation;
     private int maxOptimizationRuns;
     private double scalePerRun;
+    private int pyramidLevels = 1;
+    private Optimizer optimizer;
+    private int maxEvaluations = DEFAULT_MAX_EVALUATIONS;
+    private double tolerance = DEFAULT_TOLERANCE;
     
     private Builder() {
       // nothing to do
@@ -211,6 +303,42 @@ public final class Registration {
       return this;
     }
     
+    /**
+     * Registers on a gaussian pyramid with the given number of levels, coarse to fine. The full search is only done
+     * on the coarsest level, finer levels refine the pose of the level above. 1 (default) registers on the original
+     * images only.
+     */
+    public Builder pyramidLevels(final int pyramidLevels) {
+      this.pyramidLevels = pyramidLevels;
+      return this;
+    }
+    
+    /**
+     * Replaces the grid search with a local optimizer that starts at the identity (or the pose of the coarser pyramid
+     * level) and uses the step widths as initial parameter scales. Search radii, optimization runs and scale per run
+     * are not used by optimizers.
+     */
+    public Builder optimizer(final Optimizer optimizer) {
+      this.optimizer = optimizer;
+      return this;
+    }
+    
+    /**
+     * Maximum number of match evaluations of an optimizer (per pyramid level).
+     */
+    public Builder maxEvaluations(final int maxEvaluations) {
+      this.maxEvaluations = maxEvaluations;
+      return this;
+    }
+    
+    /**
+     * Relative convergence tolerance of an optimizer.
+     */
+    public Builder tolerance(final double tolerance) {
+      this.tolerance = tolerance;
+      return this;
+    }
+    
     public Registration build() {
       return new Registration(matchMetric,
           searchRadiusTranslation,
@@ -218,7 +346,46 @@ public final class Registration {
           stepWidthTranslation,
           stepWidthRotation,
           maxOptimizationRuns,
-          scalePerRun);
+          scalePerRun,
+          pyramidLevels,
+          optimizer,
+          maxEvaluations,
+          tolerance);
+    }
+    
+  }
+  
+  private static final class Pose {
+    
+    private static final Pose IDENTITY = new Pose(0d, 0d, 0d, false);
+    
+    private final double tx;
+    private final double ty;
+    private final double rot;
+    private final boolean rotateFirst;
+    
+    private Pose(final double tx, final double ty, final double rot, final boolean rotateFirst) {
+      this.tx = tx;
+      this.ty = ty;
+      this.rot = rot;
+      this.rotateFirst = rotateFirst;
+    }
+    
+    private boolean isIdentity() {
+      return tx == 0d && ty == 0d && rot == 0d;
+    }
+    
+    /**
+     * @return the same pose on an image scaled by {@code factor}, rotations are not affected
+     */
+    private Pose scale(final double factor) {
+      return new Pose(tx * factor, ty * factor, rot, rotateFirst);
+    }
+    
+    private Transformations toTransformations() {
+      return rotateFirst
+          ? new Transformations().rotate(rot).translate(tx, ty)
+          : new Transformations().translate(tx, ty).rotate(rot);
     }
     
   }
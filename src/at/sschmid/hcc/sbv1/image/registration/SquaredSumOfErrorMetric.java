@@ -1,26 +1,120 @@
 package at.sschmid.hcc.sbv1.image.registration;
 
 import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.image.PixelBuffer;
+import at.sschmid.hcc.sbv1.image.resampling.AffineMatrix;
+import at.sschmid.hcc.sbv1.image.resampling.Interpolation;
+import at.sschmid.hcc.sbv1.utility.TileScheduler;
+
+import java.util.Random;
 
 final class SquaredSumOfErrorMetric implements MatchMetric {
   
+  private static final long ROW_ORDER_SEED = 42L;
+  
+  private volatile int[] rowOrder = new int[0];
+  
   SquaredSumOfErrorMetric() {
     // nothing to do
   }
   
   @Override
   public double getMatch(final Image image1, final Image image2) {
+    final PixelBuffer pixels1 = image1.pixels;
+    final PixelBuffer pixels2 = image2.pixels;
+    return TileScheduler.shared().sumTiles(image1.width, image1.height, (x0, y0, x1, y1) -> {
+      double sseSum = 0d;
+      for (int y = y0; y < y1; y++) {
+        final int offset1 = pixels1.index(0, y);
+        final int offset2 = pixels2.index(0, y);
+        for (int x = x0; x < x1; x++) {
+          final int val1 = pixels1.get(offset1 + x);
+          final int val2 = pixels2.get(offset2 + x);
+          final int diff = val1 - val2;
+          sseSum += diff * diff;
+        }
+      }
+      
+      return sseSum;
+    });
+  }
+  
+  @Override
+  public double getMatch(final Image image1, final Image image2, final AffineMatrix pose) {
+    final PixelBuffer pixels1 = image1.pixels;
+    final PixelBuffer pixels2 = image2.pixels;
+    return TileScheduler.shared().sumTiles(image1.width, image1.height, (x0, y0, x1, y1) -> {
+      double sseSum = 0d;
+      for (int y = y0; y < y1; y++) {
+        final int offset1 = pixels1.index(0, y);
+        
+        // step the source position along the row instead of mapping every pixel
+        double sourceX = pose.mapX(x0, y);
+        double sourceY = pose.mapY(x0, y);
+        for (int x = x0; x < x1; x++) {
+          final int diff = pixels1.get(offset1 + x) - Interpolation.nearestNeighbour(pixels2, sourceX, sourceY);
+          sseSum += diff * diff;
+          sourceX += pose.m00;
+          sourceY += pose.m10;
+        }
+      }
+      
+      return sseSum;
+    });
+  }
+  
+  @Override
+  public double getMatch(final Image image1, final Image image2, final double bestSoFar) {
+    return getMatch(image1, image2, AffineMatrix.identity(), bestSoFar);
+  }
+  
+  @Override
+  public double getMatch(final Image image1, final Image image2, final AffineMatrix pose, final double bestSoFar) {
+    final PixelBuffer pixels1 = image1.pixels;
+    final PixelBuffer pixels2 = image2.pixels;
+    
+    // the sum only grows, so a candidate is lost once it reaches the bound. rows are visited in random order, so
+    // the partial sum grows evenly over the image instead of depending on its top rows.
     double sseSum = 0d;
-    for (int x = 0; x < image1.width; x++) {
-      for (int y = 0; y < image1.height; y++) {
-        final int val1 = image1.data[x][y];
-        final int val2 = image2.data[x][y];
-        final int diff = val1 - val2;
+    for (final int y : rowOrder(image1.height)) {
+      final int offset1 = pixels1.index(0, y);
+      double sourceX = pose.mapX(0, y);
+      double sourceY = pose.mapY(0, y);
+      for (int x = 0; x < image1.width; x++) {
+        final int diff = pixels1.get(offset1 + x) - Interpolation.nearestNeighbour(pixels2, sourceX, sourceY);
         sseSum += diff * diff;
+        sourceX += pose.m00;
+        sourceY += pose.m10;
+      }
+      
+      if (sseSum >= bestSoFar) {
+        return sseSum;
       }
     }
     
     return sseSum;
   }
   
+  private int[] rowOrder(final int height) {
+    int[] rows = rowOrder;
+    if (rows.length != height) {
+      rows = new int[height];
+      for (int y = 0; y < height; y++) {
+        rows[y] = y;
+      }
+      
+      final Random random = new Random(ROW_ORDER_SEED);
+      for (int i = height - 1; i > 0; i--) {
+        final int j = random.nextInt(i + 1);
+        final int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+      }
+      
+      rowOrder = rows;
+    }
+    
+    return rows;
+  }
+  
 }
@@ -0,0 +1,110 @@
+package at.sschmid.hcc.sbv1.image.resampling;
+
+/**
+ * Immutable 2x3 affine matrix that maps a pixel (x, y) of a result image to its position in the source image
+ * (backward mapping):
+ * <pre>
+ *   sourceX = m00 * x + m01 * y + m02
+ *   sourceY = m10 * x + m11 * y + m12
+ * </pre>
+ */
+public final class AffineMatrix {
+  
+  private static final AffineMatrix IDENTITY = new AffineMatrix(1d, 0d, 0d, 0d, 1d, 0d);
+  
+  public static AffineMatrix identity() {
+    return IDENTITY;
+  }
+  
+  /**
+   * Backward mapping of moving an image by (x, y).
+   */
+  public static AffineMatrix translation(final double x, final double y) {
+    return new AffineMatrix(1d, 0d, -x, 0d, 1d, -y);
+  }
+  
+  /**
+   * Backward mapping of rotating an image around (centerX, centerY).
+   */
+  public static AffineMatrix rotation(final double radians, final double centerX, final double centerY) {
+    final double cos = Math.cos(radians);
+    final double sin = Math.sin(radians);
+    return new AffineMatrix(cos,
+        sin,
+        centerX - cos * centerX - sin * centerY,
+        -sin,
+        cos,
+        centerY + sin * centerX - cos * centerY);
+  }
+  
+  /**
+   * Backward mapping of scaling an image by (factorX, factorY) relative to the top-left corner.
+   */
+  public static AffineMatrix scale(final double factorX, final double factorY) {
+    return new AffineMatrix(1d / factorX, 0d, 0d, 0d, 1d / factorY, 0d);
+  }
+  
+  public final double m00;
+  public final double m01;
+  public final double m02;
+  public final double m10;
+  public final double m11;
+  public final double m12;
+  
+  public AffineMatrix(final double m00,
+                      final double m01,
+                      final double m02,
+                      final double m10,
+                      final double m11,
+                      final double m12) {
+    this.m00 = m00;
+    this.m01 = m01;
+    this.m02 = m02;
+    this.m10 = m10;
+    this.m11 = m11;
+    this.m12 = m12;
+  }
+  
+  public double mapX(final double x, final double y) {
+    return m00 * x + m01 * y + m02;
+  }
+  
+  public double mapY(final double x, final double y) {
+    return m10 * x + m11 * y + m12;
+  }
+  
+  /**
+   * @return a matrix that first applies {@code other} and then this matrix.
+   */
+  public AffineMatrix concatenate(final AffineMatrix other) {
+    return new AffineMatrix(m00 * other.m00 + m01 * other.m10,
+        m00 * other.m01 + m01 * other.m11,
+        m00 * other.m02 + m01 * other.m12 + m02,
+        m10 * other.m00 + m11 * other.m10,
+        m10 * other.m01 + m11 * other.m11,
+        m10 * other.m02 + m11 * other.m12 + m12);
+  }
+  
+  /**
+   * @return the inverse mapping, i.e. the forward mapping from the source image to the result image.
+   */
+  public AffineMatrix inverse() {
+    final double determinant = m00 * m11 - m01 * m10;
+    if (determinant == 0d) {
+      throw new IllegalArgumentException("Matrix is not invertible");
+    }
+    
+    return new AffineMatrix(m11 / determinant,
+        -m01 / determinant,
+        (m01 * m12 - m11 * m02) / determinant,
+        -m10 / determinant,
+        m00 / determinant,
+        (m10 * m02 - m00 * m12) / determinant);
+  }
+  
+  @Override
+  public String toString() {
+    return String.format("AffineMatrix [[%.4f, %.4f, %.4f], [%.4f, %.4f, %.4f]]", m00, m01, m02, m10, m11, m12);
+  }
+  
+}
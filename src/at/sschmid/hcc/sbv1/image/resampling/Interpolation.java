@@ -1,7 +1,7 @@
 package at.sschmid.hcc.sbv1.image.resampling;
 
 import at.sschmid.hcc.sbv1.image.Image;
-import at.sschmid.hcc.sbv1.utility.Point;
+import at.sschmid.hcc.sbv1.image.PixelBuffer;
 
 public final class Interpolation {
   
@@ -9,6 +9,15 @@ public final class Interpolation {
   
   private final Image image;
   
+  /**
+   * Nearest neighbour lookup directly on a pixel buffer, pixels outside of the buffer are background.
+   */
+  public static int nearestNeighbour(final PixelBuffer pixels, final double x, final double y) {
+    final int px = (int) (x + 0.5);
+    final int py = (int) (y + 0.5);
+    return px >= 0 && px < pixels.width && py >= 0 && py < pixels.height ? pixels.get(px, py) : BG_COLOR;
+  }
+  
   public Interpolation(final Image image) {
     this.image = image;
   }
@@ -20,33 +29,22 @@ public final class Interpolation {
   }
   
   public int getNearestNeighbourColor(final double x, final double y) {
-    final Point p = new Point((int) (x + 0.5), (int) (y + 0.5));
-    return p.x >= 0 && p.x < image.width && p.y >= 0 && p.y < image.height ? image.data[p.x][p.y] : BG_COLOR;
+    return nearestNeighbour(image.pixels, x, y);
   }
   
   public int getBiLinearColor(final double x, final double y) {
     // How to get the 4 coords for e.g (3.7, 12.2)
     // P0: (3,12) P1: (4,12), P2: (3, 13), P3: (4,13)
-    final Point p1 = new Point((int) x, (int) y);
-    final Point p2 = new Point(p1.x + 1, p1.y);
-    final Point p3 = new Point(p1.x, p1.y + 1);
-    final Point p4 = new Point(p1.x + 1, p1.y + 1);
+    final int x1 = (int) x;
+    final int y1 = (int) y;
     
-    final double xPercentage = x - p1.x;
-    final double yPercentage = y - p1.y;
+    final double xPercentage = x - x1;
+    final double yPercentage = y - y1;
     
-    final int p1Color = p1.x >= 0 && p1.x < image.width && p1.y >= 0 && p1.y < image.height
-        ? image.data[p1.x][p1.y]
-        : BG_COLOR;
-    final int p2Color = p2.x >= 0 && p2.x < image.width && p2.y >= 0 && p2.y < image.height
-        ? image.data[p2.x][p2.y]
-        : BG_COLOR;
-    final int p3Color = p3.x >= 0 && p3.x < image.width && p3.y >= 0 && p3.y < image.height
-        ? image.data[p3.x][p3.y]
-        : BG_COLOR;
-    final int p4Color = p4.x >= 0 && p4.x < image.width && p4.y >= 0 && p4.y < image.height
-        ? image.data[p4.x][p4.y]
-        : BG_COLOR;
+    final int p1Color = colorOrBackground(x1, y1);
+    final int p2Color = colorOrBackground(x1 + 1, y1);
+    final int p3Color = colorOrBackground(x1, y1 + 1);
+    final int p4Color = colorOrBackground(x1 + 1, y1 + 1);
     
     final double interpolatedColor1 = p1Color + xPercentage * (p2Color - p1Color);
     final double interpolatedColor2 = p3Color + xPercentage * (p4Color - p3Color);
@@ -55,6 +53,10 @@ public final class Interpolation {
     return Math.max(Math.min((int) interpolatedColor3, image.maxColor), 0);
   }
   
+  private int colorOrBackground(final int x, final int y) {
+    return x >= 0 && x < image.width && y >= 0 && y < image.height ? image.get(x, y) : BG_COLOR;
+  }
+  
   public enum Mode {
     NearestNeighbour,
     BiLinear
@@ -46,6 +46,50 @@ public final class Transformations {
     return this;
   }
   
+  /**
+   * Composes all transformations into a single backward mapping for an image of the given size. Rotations are around
+   * the center of the (possibly already scaled) image, like in {@link Transformation}.
+   */
+  public AffineMatrix toMatrix(final int width, final int height) {
+    AffineMatrix matrix = AffineMatrix.identity();
+    int currentWidth = width;
+    int currentHeight = height;
+    for (final TransformationItem item : items) {
+      if (item instanceof Translation) {
+        final Translation translation = (Translation) item;
+        matrix = matrix.concatenate(AffineMatrix.translation(translation.x, translation.y));
+      } else if (item instanceof Rotation) {
+        final Rotation rotation = (Rotation) item;
+        matrix = matrix.concatenate(AffineMatrix.rotation(rotation.radians, currentWidth / 2d, currentHeight / 2d));
+      } else {
+        final Scale scale = (Scale) item;
+        final int newWidth = scale.scaledSize(currentWidth);
+        final int newHeight = scale.scaledSize(currentHeight);
+        matrix = matrix.concatenate(AffineMatrix.scale((newWidth - 1d) / (currentWidth - 1d),
+            (newHeight - 1d) / (currentHeight - 1d)));
+        currentWidth = newWidth;
+        currentHeight = newHeight;
+      }
+    }
+    
+    return matrix;
+  }
+  
+  public int transformedWidth(final int width) {
+    int result = width;
+    for (final TransformationItem item : items) {
+      if (item instanceof Scale) {
+        result = ((Scale) item).scaledSize(result);
+      }
+    }
+    
+    return result;
+  }
+  
+  public int transformedHeight(final int height) {
+    return transformedWidth(height);
+  }
+  
   @Override
   public String toString() {
     final StringBuilder result = new StringBuilder();
@@ -114,9 +158,18 @@ public final class Transformations {
     public final double factor;
     
     private Scale(final double factor) {
+      if (factor < 0.01d || factor > 10d) {
+        throw new IllegalArgumentException(String.format("%f is not a valid scale. Scale must be in [0.01;10].",
+            factor));
+      }
+      
       this.factor = factor;
     }
     
+    public int scaledSize(final int size) {
+      return (int) (size * factor + 0.5); // arithm round
+    }
+    
     @Override
     public String toString() {
       return String.format("Scale %.3f", factor);
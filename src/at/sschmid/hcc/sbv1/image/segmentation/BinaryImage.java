@@ -0,0 +1,204 @@
+package at.sschmid.hcc.sbv1.image.segmentation;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.image.PixelBuffer;
+import at.sschmid.hcc.sbv1.utility.TileScheduler;
+
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Bit-packed binary mask: every row is a sequence of longs, bit x % 64 of word x / 64 is the pixel x. Bits beyond the
+ * width of the last word of a row are always 0. Logical operations and the morphology of {@link MathematicMorphology}
+ * process 64 pixels per operation.
+ */
+public final class BinaryImage {
+  
+  public static final int WORD_SIZE = 64;
+  
+  /**
+   * Pixels equal to {@link Image#maxColor} are foreground.
+   */
+  public static BinaryImage of(final Image image) {
+    return of(image, new BinaryThreshold(image.maxColor, 0, image.maxColor));
+  }
+  
+  /**
+   * Pixels within the threshold interval are foreground.
+   */
+  public static BinaryImage of(final Image image, final BinaryThreshold binaryThreshold) {
+    final BinaryImage result = new BinaryImage(image.width, image.height);
+    final PixelBuffer pixels = image.pixels;
+    TileScheduler.shared().forEachRows(image.height, (yStart, yEnd) -> {
+      for (int y = yStart; y < yEnd; y++) {
+        final int offset = pixels.index(0, y);
+        final int rowOffset = y * result.wordsPerRow;
+        for (int x = 0; x < image.width; x++) {
+          final int value = pixels.get(offset + x);
+          if (value >= binaryThreshold.thresholdMin
+              && (binaryThreshold.thresholdMax == null || value <= binaryThreshold.thresholdMax)) {
+            result.words[rowOffset + x / WORD_SIZE] |= 1L << x;
+          }
+        }
+      }
+    });
+    
+    return result;
+  }
+  
+  public final int width;
+  public final int height;
+  
+  final int wordsPerRow;
+  final long[] words;
+  
+  private final long lastWordMask;
+  
+  public BinaryImage(final int width, final int height) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException(String.format("Invalid size %dx%d", width, height));
+    }
+    
+    this.width = width;
+    this.height = height;
+    this.wordsPerRow = (width + WORD_SIZE - 1) / WORD_SIZE;
+    this.words = new long[wordsPerRow * height];
+    this.lastWordMask = width % WORD_SIZE == 0 ? -1L : (1L << width) - 1L;
+  }
+  
+  public boolean get(final int x, final int y) {
+    return (words[y * wordsPerRow + x / WORD_SIZE] & 1L << x) != 0;
+  }
+  
+  public void set(final int x, final int y, final boolean foreground) {
+    final int i = y * wordsPerRow + x / WORD_SIZE;
+    if (foreground) {
+      words[i] |= 1L << x;
+    } else {
+      words[i] &= ~(1L << x);
+    }
+  }
+  
+  /**
+   * @return the number of foreground pixels
+   */
+  public int count() {
+    int count = 0;
+    for (final long word : words) {
+      count += Long.bitCount(word);
+    }
+    
+    return count;
+  }
+  
+  public BinaryImage and(final BinaryImage other) {
+    return combine(other, (a, b) -> a & b);
+  }
+  
+  public BinaryImage or(final BinaryImage other) {
+    return combine(other, (a, b) -> a | b);
+  }
+  
+  public BinaryImage xor(final BinaryImage other) {
+    return combine(other, (a, b) -> a ^ b);
+  }
+  
+  public BinaryImage not() {
+    final BinaryImage result = new BinaryImage(width, height);
+    for (int i = 0; i < words.length; i++) {
+      result.words[i] = ~words[i];
+    }
+    
+    result.clearPadding();
+    return result;
+  }
+  
+  public BinaryImage erosion(final Neighbour neighbour) {
+    return new MathematicMorphology(neighbour).erosion(this);
+  }
+  
+  public BinaryImage dilation(final Neighbour neighbour) {
+    return new MathematicMorphology(neighbour).dilation(this);
+  }
+  
+  /**
+   * Exact hit-or-miss, see {@link MathematicMorphology#hitOrMiss(BinaryImage)}.
+   */
+  public BinaryImage hitOrMiss(final int[][] structure) {
+    return new MathematicMorphology(structure).hitOrMiss(this);
+  }
+  
+  /**
+   * @return an image with 0 for background and 255 for foreground
+   */
+  public Image toImage() {
+    return toImage(0, 255);
+  }
+  
+  public Image toImage(final int background, final int foreground) {
+    final Image result = new Image(width, height);
+    TileScheduler.shared().forEachRows(height, (yStart, yEnd) -> {
+      for (int y = yStart; y < yEnd; y++) {
+        for (int x = 0; x < width; x++) {
+          result.set(x, y, get(x, y) ? foreground : background);
+        }
+      }
+    });
+    
+    return result;
+  }
+  
+  /**
+   * @return the 64 pixels of row y starting at x (which may be negative), pixels outside of the image are
+   * {@code outside}
+   */
+  long bits(final int x, final int y, final boolean outside) {
+    if (y < 0 || y >= height) {
+      return outside ? -1L : 0L;
+    }
+    
+    final int word = Math.floorDiv(x, WORD_SIZE);
+    final int shift = Math.floorMod(x, WORD_SIZE);
+    final long low = word(word, y, outside);
+    if (shift == 0) {
+      return low;
+    }
+    
+    return low >>> shift | word(word + 1, y, outside) << (WORD_SIZE - shift);
+  }
+  
+  /**
+   * Sets word w of row y, bits beyond the width are cleared.
+   */
+  void setWord(final int w, final int y, final long value) {
+    words[y * wordsPerRow + w] = w == wordsPerRow - 1 ? value & lastWordMask : value;
+  }
+  
+  private long word(final int w, final int y, final boolean outside) {
+    if (w < 0 || w >= wordsPerRow) {
+      return outside ? -1L : 0L;
+    }
+    
+    final long value = words[y * wordsPerRow + w];
+    return outside && w == wordsPerRow - 1 ? value | ~lastWordMask : value;
+  }
+  
+  private BinaryImage combine(final BinaryImage other, final LongBinaryOperator operator) {
+    if (width != other.width || height != other.height) {
+      throw new IllegalArgumentException("Binary images must be of the same size");
+    }
+    
+    final BinaryImage result = new BinaryImage(width, height);
+    for (int i = 0; i < words.length; i++) {
+      result.words[i] = operator.applyAsLong(words[i], other.words[i]);
+    }
+    
+    return result;
+  }
+  
+  private void clearPadding() {
+    for (int y = 0; y < height; y++) {
+      words[y * wordsPerRow + wordsPerRow - 1] &= lastWordMask;
+    }
+  }
+  
+}
@@ -0,0 +1,252 @@
+package at.sschmid.hcc.sbv1.image.segmentation;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.utility.TileScheduler;
+
+import java.util.Arrays;
+
+/**
+ * Labelling of all connected foreground regions of an image, without seeds. Labels are numbered 1..count in raster
+ * order of the first pixel of each region, 0 is background.
+ * <p>
+ * Two-pass union-find: bands of rows are labelled in parallel (every pixel is linked to its already visited
+ * neighbours inside the band), then the first row of every band is merged with the last row of the band above and
+ * finally all pixels are resolved to consecutive labels while the region statistics are accumulated.
+ */
+public final class ConnectedComponents {
+  
+  private static final int BACKGROUND = -1;
+  
+  public final int width;
+  public final int height;
+  
+  private final int[] labels;
+  private final int count;
+  private final int[] areas;
+  private final int[] minXs;
+  private final int[] minYs;
+  private final int[] maxXs;
+  private final int[] maxYs;
+  private final long[] sumXs;
+  private final long[] sumYs;
+  
+  ConnectedComponents(final Image image, final Neighbour neighbour, final BinaryThreshold binaryThreshold) {
+    if (neighbour != Neighbour.N4 && neighbour != Neighbour.N8) {
+      throw new IllegalArgumentException(String.format("Connected components need N4 or N8, not %s", neighbour));
+    }
+    
+    this.width = image.width;
+    this.height = image.height;
+    
+    // provisional labels are pixel indices, the root of a region is its first pixel in raster order
+    final int[] parents = new int[image.size];
+    final boolean n8 = neighbour == Neighbour.N8;
+    final TileScheduler scheduler = TileScheduler.shared();
+    scheduler.forEachRows(height, (yStart, yEnd) -> {
+      for (int y = yStart; y < yEnd; y++) {
+        for (int x = 0; x < width; x++) {
+          final int i = y * width + x;
+          final int value = image.get(x, y);
+          if (value < binaryThreshold.thresholdMin
+              || (binaryThreshold.thresholdMax != null && value > binaryThreshold.thresholdMax)) {
+            parents[i] = BACKGROUND;
+            continue;
+          }
+          
+          parents[i] = i;
+          if (x > 0) {
+            link(parents, i, i - 1);
+          }
+          
+          if (y > yStart) {
+            linkAbove(parents, x, y, n8);
+          }
+        }
+      }
+    });
+    
+    // merge the bands along their borders
+    for (int y = scheduler.tileHeight; y < height; y += scheduler.tileHeight) {
+      for (int x = 0; x < width; x++) {
+        if (parents[y * width + x] != BACKGROUND) {
+          linkAbove(parents, x, y, n8);
+        }
+      }
+    }
+    
+    labels = new int[image.size];
+    scheduler.forEachRows(height, (yStart, yEnd) -> {
+      for (int i = yStart * width; i < yEnd * width; i++) {
+        labels[i] = parents[i] == BACKGROUND ? BACKGROUND : find(parents, i);
+      }
+    });
+    
+    // roots precede all other pixels of their region, so a single raster pass assigns consecutive labels in place
+    int label = 0;
+    for (int i = 0; i < labels.length; i++) {
+      final int root = labels[i];
+      if (root == BACKGROUND) {
+        labels[i] = 0;
+      } else {
+        labels[i] = root == i ? ++label : labels[root];
+      }
+    }
+    
+    count = label;
+    areas = new int[count + 1];
+    minXs = new int[count + 1];
+    minYs = new int[count + 1];
+    maxXs = new int[count + 1];
+    maxYs = new int[count + 1];
+    sumXs = new long[count + 1];
+    sumYs = new long[count + 1];
+    Arrays.fill(minXs, Integer.MAX_VALUE);
+    Arrays.fill(minYs, Integer.MAX_VALUE);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        final int l = labels[y * width + x];
+        if (l == 0) {
+          continue;
+        }
+        
+        areas[l]++;
+        minXs[l] = Math.min(minXs[l], x);
+        minYs[l] = Math.min(minYs[l], y);
+        maxXs[l] = Math.max(maxXs[l], x);
+        maxYs[l] = Math.max(maxYs[l], y);
+        sumXs[l] += x;
+        sumYs[l] += y;
+      }
+    }
+  }
+  
+  /**
+   * @return the number of regions
+   */
+  public int count() {
+    return count;
+  }
+  
+  public int label(final int x, final int y) {
+    return labels[y * width + x];
+  }
+  
+  /**
+   * @return the label map, row-major (index y * width + x). The array is shared, do not modify it.
+   */
+  public int[] labels() {
+    return labels;
+  }
+  
+  public Region region(final int label) {
+    if (label < 1 || label > count) {
+      throw new IllegalArgumentException(String.format("Label %d is not in [1;%d]", label, count));
+    }
+    
+    return new Region(label,
+        areas[label],
+        minXs[label],
+        minYs[label],
+        maxXs[label],
+        maxYs[label],
+        (double) sumXs[label] / areas[label],
+        (double) sumYs[label] / areas[label]);
+  }
+  
+  /**
+   * Links pixel (x, y) to its neighbours in the row above: top for N4, additionally top left and top right for N8.
+   */
+  private void linkAbove(final int[] parents, final int x, final int y, final boolean n8) {
+    final int i = y * width + x;
+    final int above = i - width;
+    link(parents, i, above);
+    if (n8) {
+      if (x > 0) {
+        link(parents, i, above - 1);
+      }
+      
+      if (x < width - 1) {
+        link(parents, i, above + 1);
+      }
+    }
+  }
+  
+  private static void link(final int[] parents, final int i, final int j) {
+    if (parents[j] == BACKGROUND) {
+      return;
+    }
+    
+    final int rootI = root(parents, i);
+    final int rootJ = root(parents, j);
+    if (rootI < rootJ) {
+      parents[rootJ] = rootI;
+    } else if (rootJ < rootI) {
+      parents[rootI] = rootJ;
+    }
+  }
+  
+  /**
+   * Root lookup without path compression, safe to run in parallel once all regions are linked.
+   */
+  private static int find(final int[] parents, int i) {
+    while (parents[i] != i) {
+      i = parents[i];
+    }
+    
+    return i;
+  }
+  
+  private static int root(final int[] parents, int i) {
+    while (parents[i] != i) {
+      parents[i] = parents[parents[i]]; // path halving
+      i = parents[i];
+    }
+    
+    return i;
+  }
+  
+  public static final class Region {
+    
+    public final int label;
+    public final int area;
+    public final int minX;
+    public final int minY;
+    public final int maxX;
+    public final int maxY;
+    public final double centroidX;
+    public final double centroidY;
+    
+    private Region(final int label,
+                   final int area,
+                   final int minX,
+                   final int minY,
+                   final int maxX,
+                   final int maxY,
+                   final double centroidX,
+                   final double centroidY) {
+      this.label = label;
+      this.area = area;
+      this.minX = minX;
+      this.minY = minY;
+      this.maxX = maxX;
+      this.maxY = maxY;
+      this.centroidX = centroidX;
+      this.centroidY = centroidY;
+    }
+    
+    @Override
+    public String toString() {
+      return String.format("Region {\n  label=%d,\n  area=%d,\n  bounds=[%d;%d]x[%d;%d],\n  centroid=(%.2f, %.2f)\n}",
+          label,
+          area,
+          minX,
+          maxX,
+          minY,
+          maxY,
+          centroidX,
+          centroidY);
+    }
+    
+  }
+  
+}
@@ -0,0 +1,57 @@
+package at.sschmid.hcc.sbv1.image.segmentation;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.utility.Point;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Hit positions of a hit-or-miss scan, packed as x * height + y in column-major order (the order of the original scan).
+ * Computed once, they can be turned into an image and into seeds for a region labelling.
+ */
+public final class Hits {
+  
+  public final int width;
+  public final int height;
+  
+  private final int[] positions;
+  
+  Hits(final int width, final int height, final int[] positions) {
+    this.width = width;
+    this.height = height;
+    this.positions = positions;
+  }
+  
+  public int count() {
+    return positions.length;
+  }
+  
+  public int x(final int i) {
+    return positions[i] / height;
+  }
+  
+  public int y(final int i) {
+    return positions[i] % height;
+  }
+  
+  public Image toImage(final int color) {
+    final Image result = new Image(width, height);
+    for (final int position : positions) {
+      result.set(position / height, position % height, color);
+    }
+    
+    return result;
+  }
+  
+  public Collection<Point> toPoints() {
+    final List<Point> points = new ArrayList<>(positions.length);
+    for (final int position : positions) {
+      points.add(new Point(position / height, position % height));
+    }
+    
+    return points;
+  }
+  
+}
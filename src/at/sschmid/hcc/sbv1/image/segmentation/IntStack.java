@@ -0,0 +1,51 @@
+package at.sschmid.hcc.sbv1.image.segmentation;
+
+import java.util.Arrays;
+
+/**
+ * Growable stack of primitive ints, e.g. for packed pixel coordinates without boxing.
+ */
+final class IntStack {
+  
+  private static final int INITIAL_CAPACITY = 64;
+  
+  private int[] values = new int[INITIAL_CAPACITY];
+  private int size;
+  
+  IntStack() {
+    // nothing to do
+  }
+  
+  void push(final int value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, 2 * size);
+    }
+    
+    values[size++] = value;
+  }
+  
+  void push(final int value1, final int value2) {
+    push(value1);
+    push(value2);
+  }
+  
+  int pop() {
+    if (size == 0) {
+      throw new IllegalStateException("Stack is empty");
+    }
+    
+    return values[--size];
+  }
+  
+  /**
+   * @return the values from the bottom to the top of the stack
+   */
+  int[] toArray() {
+    return Arrays.copyOf(values, size);
+  }
+  
+  boolean isEmpty() {
+    return size == 0;
+  }
+  
+}
@@ -0,0 +1,267 @@
+package at.sschmid.hcc.sbv1.image.segmentation;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.image.IntegralImage;
+import at.sschmid.hcc.sbv1.image.PixelBuffer;
+import at.sschmid.hcc.sbv1.utility.TileScheduler;
+
+import java.util.Arrays;
+
+/**
+ * Local (adaptive) thresholding. Every mode produces the mask in a small constant number of passes over the image:
+ * pixels at or above their local threshold are foreground (maxColor), all others 0.
+ */
+public final class LocalThreshold {
+  
+  public static final double DEFAULT_NIBLACK_K = -0.2d;
+  public static final double DEFAULT_SAUVOLA_K = 0.5d;
+  public static final double DEFAULT_SAUVOLA_RANGE = 128d;
+  
+  private final Image image;
+  
+  public LocalThreshold(final Image image) {
+    this.image = image;
+  }
+  
+  /**
+   * Segments as created by {@link Image#getSegments(int, int)}: one threshold per segment, calculated from the
+   * histogram of its area. Where segments overlap, a pixel is foreground if it is foreground in any of them.
+   */
+  public Image segments(final int segmentWidth, final int segmentHeight, final ThresholdMethod method) {
+    final SegmentAxis columns = new SegmentAxis(image.width, segmentWidth);
+    final SegmentAxis rows = new SegmentAxis(image.height, segmentHeight);
+    final double[][] thresholds = new double[columns.count][rows.count];
+    TileScheduler.shared().forEachTile(columns.count, rows.count, (i0, j0, i1, j1) -> {
+      for (int i = i0; i < i1; i++) {
+        for (int j = j0; j < j1; j++) {
+          thresholds[i][j] = threshold(method, histogram(columns.start(i),
+              rows.start(j),
+              columns.start(i) + segmentWidth,
+              rows.start(j) + segmentHeight));
+        }
+      }
+    });
+    
+    final int[] firstColumns = columns.firsts();
+    final int[] lastColumns = columns.lasts();
+    final int[] firstRows = rows.firsts();
+    final int[] lastRows = rows.lasts();
+    return mask((x, y) -> {
+      // pixels right of and below the last segment belong to none and stay background
+      double threshold = Double.POSITIVE_INFINITY;
+      for (int i = firstColumns[x]; i <= lastColumns[x]; i++) {
+        for (int j = firstRows[y]; j <= lastRows[y]; j++) {
+          threshold = Math.min(threshold, thresholds[i][j]);
+        }
+      }
+      
+      return threshold;
+    });
+  }
+  
+  /**
+   * Non-overlapping tiles with one threshold each, the threshold of a pixel is interpolated bilinearly between the
+   * centers of the four nearest tiles, so there are no steps at the tile borders.
+   */
+  public Image tilesInterpolated(final int tileWidth, final int tileHeight, final ThresholdMethod method) {
+    if (tileWidth < 1 || tileHeight < 1) {
+      throw new IllegalArgumentException("Tile size must be positive");
+    }
+    
+    final int columns = (image.width + tileWidth - 1) / tileWidth;
+    final int rows = (image.height + tileHeight - 1) / tileHeight;
+    final double[][] thresholds = new double[columns][rows];
+    final double[] centerXs = new double[columns];
+    final double[] centerYs = new double[rows];
+    for (int i = 0; i < columns; i++) {
+      centerXs[i] = (i * tileWidth + Math.min((i + 1) * tileWidth, image.width) - 1) / 2d;
+    }
+    
+    for (int j = 0; j < rows; j++) {
+      centerYs[j] = (j * tileHeight + Math.min((j + 1) * tileHeight, image.height) - 1) / 2d;
+    }
+    
+    TileScheduler.shared().forEachTile(columns, rows, (i0, j0, i1, j1) -> {
+      for (int i = i0; i < i1; i++) {
+        for (int j = j0; j < j1; j++) {
+          thresholds[i][j] = threshold(method, histogram(i * tileWidth,
+              j * tileHeight,
+              Math.min((i + 1) * tileWidth, image.width),
+              Math.min((j + 1) * tileHeight, image.height)));
+        }
+      }
+    });
+    
+    return mask((x, y) -> {
+      final int i0 = lowerCenter(centerXs, x);
+      final int j0 = lowerCenter(centerYs, y);
+      final int i1 = Math.min(i0 + 1, columns - 1);
+      final int j1 = Math.min(j0 + 1, rows - 1);
+      final double fx = weight(centerXs, i0, i1, x);
+      final double fy = weight(centerYs, j0, j1, y);
+      final double top = thresholds[i0][j0] + fx * (thresholds[i1][j0] - thresholds[i0][j0]);
+      final double bottom = thresholds[i0][j1] + fx * (thresholds[i1][j1] - thresholds[i0][j1]);
+      return top + fy * (bottom - top);
+    });
+  }
+  
+  /**
+   * Niblack with mean and standard deviation of the (2 * radius + 1)² window. The usual k is meant for dark objects,
+   * the objects here are bright, so it is applied to the inverted image: T = mean - k * standard deviation.
+   */
+  public Image niblack(final int radius, final double k) {
+    final IntegralImage integralImage = image.integralImage();
+    return mask((x, y) -> {
+      final double mean = integralImage.mean(x - radius, y - radius, x + radius, y + radius);
+      final double deviation = integralImage.standardDeviation(x - radius, y - radius, x + radius, y + radius);
+      return mean - k * deviation;
+    });
+  }
+  
+  /**
+   * Sauvola with mean and standard deviation of the (2 * radius + 1)² window, range is the dynamic range of the
+   * standard deviation (128 for 8 bit images). Like {@link #niblack(int, double)} applied to the inverted image:
+   * T = maxColor - (maxColor - mean) * (1 + k * (standard deviation / range - 1)).
+   */
+  public Image sauvola(final int radius, final double k, final double range) {
+    final IntegralImage integralImage = image.integralImage();
+    return mask((x, y) -> {
+      final double mean = integralImage.mean(x - radius, y - radius, x + radius, y + radius);
+      final double deviation = integralImage.standardDeviation(x - radius, y - radius, x + radius, y + radius);
+      return image.maxColor - (image.maxColor - mean) * (1 + k * (deviation / range - 1));
+    });
+  }
+  
+  private Image mask(final PixelThreshold threshold) {
+    final Image result = new Image(image.width, image.height);
+    final PixelBuffer pixels = image.pixels;
+    final PixelBuffer target = result.pixels;
+    TileScheduler.shared().forEachRows(image.height, (yStart, yEnd) -> {
+      for (int y = yStart; y < yEnd; y++) {
+        final int offset = pixels.index(0, y);
+        final int targetOffset = target.index(0, y);
+        for (int x = 0; x < image.width; x++) {
+          if (pixels.get(offset + x) >= threshold.at(x, y)) {
+            target.set(targetOffset + x, image.maxColor);
+          }
+        }
+      }
+    });
+    
+    return result;
+  }
+  
+  /**
+   * Like {@link BinaryThreshold}, maxColor is foreground even for thresholds beyond it.
+   */
+  private int threshold(final ThresholdMethod method, final int[] histogram) {
+    return Math.min(method.threshold(histogram), image.maxColor);
+  }
+  
+  /**
+   * @return the histogram of the rectangle [x0;x1) x [y0;y1)
+   */
+  private int[] histogram(final int x0, final int y0, final int x1, final int y1) {
+    final int[] histogram = new int[image.maxColor + 1];
+    final PixelBuffer pixels = image.pixels;
+    for (int y = y0; y < y1; y++) {
+      final int offset = pixels.index(0, y);
+      for (int x = x0; x < x1; x++) {
+        histogram[pixels.get(offset + x)]++;
+      }
+    }
+    
+    return histogram;
+  }
+  
+  /**
+   * @return the index of the last center at or before position, 0 before the first center
+   */
+  private static int lowerCenter(final double[] centers, final int position) {
+    int low = 0;
+    int high = centers.length - 1;
+    while (low < high) {
+      final int middle = (low + high + 1) / 2;
+      if (centers[middle] <= position) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    
+    return low;
+  }
+  
+  private static double weight(final double[] centers, final int i0, final int i1, final int position) {
+    if (i0 == i1 || position <= centers[i0]) {
+      return 0d;
+    }
+    
+    return Math.min(1d, (position - centers[i0]) / (centers[i1] - centers[i0]));
+  }
+  
+  private interface PixelThreshold {
+    
+    double at(final int x, final int y);
+    
+  }
+  
+  /**
+   * Segment positions along one axis: segments start every {@code size} pixels and are centered there, segments that
+   * would leave the image are moved inside (see {@link Segment}).
+   */
+  private static final class SegmentAxis {
+    
+    private final int length;
+    private final int size;
+    private final int radius;
+    private final int count;
+    
+    private SegmentAxis(final int length, final int size) {
+      if (size > length) {
+        throw new IllegalArgumentException("Segments need to be smaller than the image from which they are created");
+      }
+      
+      if (size % 2 == 0) {
+        throw new IllegalArgumentException("Segment sizes need to be uneven numbers");
+      }
+      
+      this.length = length;
+      this.size = size;
+      this.radius = (size - 1) / 2;
+      this.count = (length + size - 1) / size;
+    }
+    
+    private int start(final int i) {
+      return Math.max(0, Math.min(i * size - radius, length - size));
+    }
+    
+    /**
+     * @return for every position the first segment that contains it, count if there is none
+     */
+    private int[] firsts() {
+      final int[] firsts = new int[length];
+      Arrays.fill(firsts, count);
+      for (int i = count - 1; i >= 0; i--) {
+        Arrays.fill(firsts, start(i), start(i) + size, i);
+      }
+      
+      return firsts;
+    }
+    
+    /**
+     * @return for every position the last segment that contains it, -1 if there is none
+     */
+    private int[] lasts() {
+      final int[] lasts = new int[length];
+      Arrays.fill(lasts, -1);
+      for (int i = 0; i < count; i++) {
+        Arrays.fill(lasts, start(i), start(i) + size, i);
+      }
+      
+      return lasts;
+    }
+    
+  }
+  
+}
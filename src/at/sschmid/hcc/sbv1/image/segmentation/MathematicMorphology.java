@@ -1,10 +1,10 @@
 package at.sschmid.hcc.sbv1.image.segmentation;
 
 import at.sschmid.hcc.sbv1.image.Image;
-import at.sschmid.hcc.sbv1.utility.Point;
+import at.sschmid.hcc.sbv1.utility.TileScheduler;
 
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 
 final class MathematicMorphology {
   
@@ -14,6 +14,7 @@ final class MathematicMorphology {
   private final double structureSize;
   private final int rx;
   private final int ry;
+  private final SeparableMorphology separable;
   
   MathematicMorphology(final int[][] structure) {
     if (structure.length % 2 == 0) {
@@ -43,6 +44,7 @@ final class MathematicMorphology {
     this.structureSize = structure.length * innerLength;
     this.rx = (structure.length - 1) / 2;
     this.ry = (innerLength - 1) / 2;
+    this.separable = SeparableMorphology.decompose(structure);
   }
   
   MathematicMorphology(final Neighbour neighbour) {
@@ -50,133 +52,317 @@ final class MathematicMorphology {
   }
   
   Image erosion(final Image image) {
+    if (separable != null) {
+      return separable.erosion(image);
+    }
+    
     final Image result = new Image(image.width, image.height);
-    for (int x = 0; x < image.width; x++) {
-      for (int y = 0; y < image.height; y++) {
-        boolean allNeighbours = true;
-        for (int k = x - rx; k <= x + rx && allNeighbours; k++) {
-          if (k >= 0 && k < image.width) {
-            for (int l = y - ry; l <= y + ry && allNeighbours; l++) {
-              if (l >= 0 && l < image.height && structure[k - (x - rx)][l - (y - ry)] == 1) {
-                allNeighbours = image.data[k][l] == image.maxColor;
+    TileScheduler.shared().forEachTile(image.width, image.height, (x0, y0, x1, y1) -> {
+      for (int y = y0; y < y1; y++) {
+        for (int x = x0; x < x1; x++) {
+          boolean allNeighbours = true;
+          for (int k = x - rx; k <= x + rx && allNeighbours; k++) {
+            if (k >= 0 && k < image.width) {
+              for (int l = y - ry; l <= y + ry && allNeighbours; l++) {
+                if (l >= 0 && l < image.height && structure[k - (x - rx)][l - (y - ry)] == 1) {
+                  allNeighbours = image.get(k, l) == image.maxColor;
+                }
               }
             }
           }
-        }
-        
-        if (allNeighbours) {
-          result.data[x][y] = image.maxColor;
+          
+          if (allNeighbours) {
+            result.set(x, y, image.maxColor);
+          }
         }
       }
-    }
+    });
     
     return result;
   }
   
   Image dilation(final Image image) {
+    if (separable != null) {
+      return separable.dilation(image);
+    }
+    
     final Image result = new Image(image.width, image.height);
-    for (int x = 0; x < image.width; x++) {
-      for (int y = 0; y < image.height; y++) {
-        boolean anyNeighbour = false;
-        for (int k = x - rx; k <= x + rx && !anyNeighbour; k++) {
-          if (k >= 0 && k < image.width) {
-            for (int l = y - ry; l <= y + ry && !anyNeighbour; l++) {
-              if (l >= 0 && l < image.height && structure[k - (x - rx)][l - (y - ry)] == 1) {
-                anyNeighbour = image.data[k][l] == image.maxColor;
+    TileScheduler.shared().forEachTile(image.width, image.height, (x0, y0, x1, y1) -> {
+      for (int y = y0; y < y1; y++) {
+        for (int x = x0; x < x1; x++) {
+          boolean anyNeighbour = false;
+          for (int k = x - rx; k <= x + rx && !anyNeighbour; k++) {
+            if (k >= 0 && k < image.width) {
+              for (int l = y - ry; l <= y + ry && !anyNeighbour; l++) {
+                if (l >= 0 && l < image.height && structure[k - (x - rx)][l - (y - ry)] == 1) {
+                  anyNeighbour = image.get(k, l) == image.maxColor;
+                }
               }
             }
           }
-        }
-        
-        if (anyNeighbour) {
-          result.data[x][y] = image.maxColor;
+          
+          if (anyNeighbour) {
+            result.set(x, y, image.maxColor);
+          }
         }
       }
-    }
+    });
     
     return result;
   }
   
-  Collection<Point> hitOrMiss(final Image image, final double quality) {
-    if (quality <= 0 || quality > 1) {
-      throw new IllegalArgumentException("Quality must be a number between 0 and 1");
-    }
-    
-    final Collection<Point> points = new LinkedList<>();
-    int matching;
-    for (int x = 0; x < image.width; x++) {
-      for (int y = 0; y < image.height; y++) {
-        matching = 0;
-        final int xEnd = x + rx;
-        for (int k = x - rx; k <= xEnd; k++) {
-          if (k >= 0 && k < image.width) {
-            final int yEnd = y + ry;
-            for (int l = y - ry; l <= yEnd; l++) {
-              final int s = structure[k - (x - rx)][l - (y - ry)];
-              if ((s == 0 || s == 1) && l >= 0 && l < image.height) {
-                if (s == 0) {
-                  if (image.data[k][l] == 0) {
-                    matching++;
-                  }
-                } else { // s == 1
-                  if (image.data[k][l] == image.maxColor) {
-                    matching++;
-                  }
-                }
+  /**
+   * Word-parallel erosion: the AND of the image shifted by every structure cell, cells outside of the image are ignored.
+   */
+  BinaryImage erosion(final BinaryImage image) {
+    return combineShifted(image, true);
+  }
+  
+  /**
+   * Word-parallel dilation: the OR of the image shifted by every structure cell.
+   */
+  BinaryImage dilation(final BinaryImage image) {
+    return combineShifted(image, false);
+  }
+  
+  /**
+   * Exact word-parallel hit-or-miss: cells with 1 have to be foreground, cells with 0 background, all other cells are
+   * ignored. Cells outside of the image never match.
+   */
+  BinaryImage hitOrMiss(final BinaryImage image) {
+    final BinaryImage result = new BinaryImage(image.width, image.height);
+    TileScheduler.shared().forEachRows(image.height, (yStart, yEnd) -> {
+      for (int y = yStart; y < yEnd; y++) {
+        for (int w = 0; w < image.wordsPerRow; w++) {
+          final int x = w * BinaryImage.WORD_SIZE;
+          long hits = -1L;
+          for (int k = 0; k < structure.length && hits != 0; k++) {
+            for (int l = 0; l < structure[k].length; l++) {
+              if (structure[k][l] == 1) {
+                hits &= image.bits(x + k - rx, y + l - ry, false);
+              } else if (structure[k][l] == 0) {
+                hits &= ~image.bits(x + k - rx, y + l - ry, true);
               }
             }
           }
+          
+          result.setWord(w, y, hits);
         }
-        
-        if (matching / structureSize >= quality) {
-          points.add(new Point(x, y));
+      }
+    });
+    
+    return result;
+  }
+  
+  private BinaryImage combineShifted(final BinaryImage image, final boolean erosion) {
+    final BinaryImage result = new BinaryImage(image.width, image.height);
+    TileScheduler.shared().forEachRows(image.height, (yStart, yEnd) -> {
+      for (int y = yStart; y < yEnd; y++) {
+        for (int w = 0; w < image.wordsPerRow; w++) {
+          final int x = w * BinaryImage.WORD_SIZE;
+          long value = erosion ? -1L : 0L;
+          for (int k = 0; k < structure.length; k++) {
+            for (int l = 0; l < structure[k].length; l++) {
+              if (structure[k][l] == 1) {
+                final long shifted = image.bits(x + k - rx, y + l - ry, erosion);
+                value = erosion ? value & shifted : value | shifted;
+              }
+            }
+          }
+          
+          result.setWord(w, y, value);
         }
       }
+    });
+    
+    return result;
+  }
+  
+  /**
+   * Counts the matching cells with summed-area tables of the foreground (maxColor) and background (0) pixels: the
+   * structure is split into rectangles of equal cells, so a rectangular template only needs a few lookups per pixel
+   * independent of its size. Cells outside of the image do not match.
+   */
+  Hits hitOrMiss(final Image image, final double quality) {
+    if (quality <= 0 || quality > 1) {
+      throw new IllegalArgumentException("Quality must be a number between 0 and 1");
     }
     
-    return points;
+    final int[] foregroundSums = summedAreaTable(image, image.maxColor);
+    final int[] backgroundSums = summedAreaTable(image, 0);
+    final List<int[]> rectangles = uniformRectangles();
+    return scan(image, quality, (x, y) -> {
+      int matching = 0;
+      for (final int[] rectangle : rectangles) {
+        matching += sum(rectangle[0] == 1 ? foregroundSums : backgroundSums,
+            image.width,
+            image.height,
+            x + rectangle[1] - rx,
+            y + rectangle[2] - ry,
+            x + rectangle[3] - rx,
+            y + rectangle[4] - ry);
+      }
+      
+      return matching;
+    });
   }
   
-  Collection<Point> hitOrMissAntiAliased(final Image image, final double quality) {
+  Hits hitOrMissAntiAliased(final Image image, final double quality) {
     if (quality <= 0 || quality > 1) {
       throw new IllegalArgumentException("Quality must be a number between 0 and 1");
     }
     
     final int[] aliasingThresholds = aliasingThresholds(image.maxColor);
-    final Collection<Point> points = new LinkedList<>();
-    int matching;
-    for (int x = 0; x < image.width; x++) {
-      for (int y = 0; y < image.height; y++) {
-        matching = 0;
-        final int xEnd = x + rx;
-        for (int k = x - rx; k <= xEnd; k++) {
-          if (k >= 0 && k < image.width) {
-            final int yEnd = y + ry;
-            for (int l = y - ry; l <= yEnd; l++) {
-              final int s = structure[k - (x - rx)][l - (y - ry)];
-              if ((s == 0 || s == 1) && l >= 0 && l < image.height) {
-                if (s == 0) {
-                  if (image.data[k][l] == 0) {
-                    matching++;
-                  }
-                } else { // s == 1
-                  final int distance = Math.abs(x - k) + Math.abs(y - l);
-                  if (image.data[k][l] >= aliasingThresholds[distance]) {
-                    matching++;
-                  }
+    return scan(image, quality, (x, y) -> {
+      int matching = 0;
+      final int xEnd = x + rx;
+      for (int k = x - rx; k <= xEnd; k++) {
+        if (k >= 0 && k < image.width) {
+          final int yEnd = y + ry;
+          for (int l = y - ry; l <= yEnd; l++) {
+            final int s = structure[k - (x - rx)][l - (y - ry)];
+            if ((s == 0 || s == 1) && l >= 0 && l < image.height) {
+              if (s == 0) {
+                if (image.get(k, l) == 0) {
+                  matching++;
+                }
+              } else { // s == 1
+                final int distance = Math.abs(x - k) + Math.abs(y - l);
+                if (image.get(k, l) >= aliasingThresholds[distance]) {
+                  matching++;
                 }
               }
             }
           }
         }
+      }
+      
+      return matching;
+    });
+  }
+  
+  /**
+   * Scans bands of columns in parallel, the hits are concatenated in the column-major order of a sequential scan.
+   */
+  private Hits scan(final Image image, final double quality, final MatchCounter counter) {
+    final TileScheduler scheduler = TileScheduler.shared();
+    final int[][] bandHits = new int[(image.width + scheduler.tileWidth - 1) / scheduler.tileWidth][];
+    scheduler.forEachTile(image.width, 1, (x0, y0, x1, y1) -> {
+      final IntStack hits = new IntStack();
+      for (int x = x0; x < x1; x++) {
+        for (int y = 0; y < image.height; y++) {
+          if (counter.matching(x, y) / structureSize >= quality) {
+            hits.push(x * image.height + y);
+          }
+        }
+      }
+      
+      bandHits[x0 / scheduler.tileWidth] = hits.toArray();
+    });
+    
+    int count = 0;
+    for (final int[] hits : bandHits) {
+      count += hits.length;
+    }
+    
+    final int[] positions = new int[count];
+    int offset = 0;
+    for (final int[] hits : bandHits) {
+      System.arraycopy(hits, 0, positions, offset, hits.length);
+      offset += hits.length;
+    }
+    
+    return new Hits(image.width, image.height, positions);
+  }
+  
+  /**
+   * Splits the structure into rectangles of equal cells (0 or 1), runs along y are merged with identical runs of the
+   * previous x. Each rectangle is {value, x0, y0, x1, y1} in structure coordinates (inclusive).
+   */
+  private List<int[]> uniformRectangles() {
+    final List<int[]> rectangles = new ArrayList<>();
+    List<int[]> open = new ArrayList<>();
+    for (int k = 0; k < structure.length; k++) {
+      final List<int[]> nextOpen = new ArrayList<>();
+      int l = 0;
+      while (l < structure[k].length) {
+        final int value = structure[k][l];
+        final int start = l;
+        while (l < structure[k].length && structure[k][l] == value) {
+          l++;
+        }
         
-        if (matching / structureSize >= quality) {
-          points.add(new Point(x, y));
+        if (value != 0 && value != 1) {
+          continue;
+        }
+        
+        int[] rectangle = null;
+        for (final int[] candidate : open) {
+          if (candidate[0] == value && candidate[2] == start && candidate[4] == l - 1) {
+            rectangle = candidate;
+            break;
+          }
         }
+        
+        if (rectangle == null) {
+          rectangle = new int[] { value, k, start, k, l - 1 };
+          rectangles.add(rectangle);
+        }
+        
+        rectangle[3] = k;
+        nextOpen.add(rectangle);
+      }
+      
+      open = nextOpen;
+    }
+    
+    return rectangles;
+  }
+  
+  /**
+   * @return summed-area table (stride width + 1) of the pixels with the given color
+   */
+  private static int[] summedAreaTable(final Image image, final int color) {
+    final int stride = image.width + 1;
+    final int[] sums = new int[stride * (image.height + 1)];
+    for (int y = 0; y < image.height; y++) {
+      final int row = (y + 1) * stride;
+      int rowSum = 0;
+      for (int x = 0; x < image.width; x++) {
+        if (image.get(x, y) == color) {
+          rowSum++;
+        }
+        
+        sums[row + x + 1] = sums[row - stride + x + 1] + rowSum;
       }
     }
     
-    return points;
+    return sums;
+  }
+  
+  /**
+   * @return the sum of the rectangle [x0;x1] x [y0;y1] (inclusive, clipped to the image)
+   */
+  private static int sum(final int[] sums,
+                         final int width,
+                         final int height,
+                         final int x0,
+                         final int y0,
+                         final int x1,
+                         final int y1) {
+    final int left = Math.max(x0, 0);
+    final int top = Math.max(y0, 0);
+    final int right = Math.min(x1, width - 1);
+    final int bottom = Math.min(y1, height - 1);
+    if (right < left || bottom < top) {
+      return 0;
+    }
+    
+    final int stride = width + 1;
+    return sums[(bottom + 1) * stride + right + 1]
+        - sums[top * stride + right + 1]
+        - sums[(bottom + 1) * stride + left]
+        + sums[top * stride + left];
   }
   
   /**
@@ -197,4 +383,10 @@ final class MathematicMorphology {
     return thresholds;
   }
   
+  private interface MatchCounter {
+    
+    int matching(final int x, final int y);
+    
+  }
+  
 }
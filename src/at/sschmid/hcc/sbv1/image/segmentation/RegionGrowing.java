@@ -1,11 +1,11 @@
 package at.sschmid.hcc.sbv1.image.segmentation;
 
 import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.image.PixelBuffer;
 import at.sschmid.hcc.sbv1.utility.Point;
 import ij.IJ;
 
 import java.util.Collection;
-import java.util.Stack;
 
 final class RegionGrowing {
   
@@ -22,56 +22,16 @@ final class RegionGrowing {
     
     for (final Point seed : seeds) {
       // check if seed point is valid
-      final int seedValue = image.data[seed.x][seed.y];
+      final int seedValue = image.get(seed.x, seed.y);
       if (seedValue < binaryThreshold.thresholdMin
           || (binaryThreshold.thresholdMax != null && seedValue > binaryThreshold.thresholdMax)) {
         continue;
       }
   
-      // non-recursive solution
-      final Stack<Point> processingStack = new Stack<>();
-      
-      result.data[seed.x][seed.y] = binaryThreshold.foreground;
-      processingStack.push(new Point(seed.x, seed.y));
-      
-      do {
-        final Point nextPos = processingStack.pop();
-        
-        // check all children in n8
-        for (int xOffset = -1; xOffset <= 1; xOffset++) {
-          for (int yOffset = -1; yOffset <= 1; yOffset++) {
-            if (neighbour == Neighbour.N4) {
-              final int offsetSum = xOffset + yOffset;
-              if (!(offsetSum == -1 || offsetSum == 1)) {
-                continue; // ignore diagonal neighbours in case of N4-strategy
-              }
-            }
-            
-            final int nbX = nextPos.x + xOffset;
-            final int nbY = nextPos.y + yOffset;
-            
-            // check if valid range
-            if (nbX >= 0 && nbX < image.width && nbY >= 0 && nbY < image.height) {
-              final int nbValue = image.data[nbX][nbY];
-              if (result.data[nbX][nbY] == UNPROCESSED_VALUE) {
-                // set colors and continue processing
-                if (nbValue >= binaryThreshold.thresholdMin
-                    && (binaryThreshold.thresholdMax == null || nbValue <= binaryThreshold.thresholdMax)) {
-                  result.data[nbX][nbY] = binaryThreshold.foreground;
-                  processingStack.push(new Point(nbX, nbY));
-                } else {
-                  result.data[nbX][nbY] = binaryThreshold.background;
-                }
-              }
-            }
-          }
-        }
-      } while (!processingStack.empty());
+      fill(result, seed, neighbour, binaryThreshold, binaryThreshold.foreground);
     }
     
-    finalizeResult(binaryThreshold, result);
-    
-    return result;
+    return finalizeResult(binaryThreshold, result);
   }
   
   Image regionLabelling(final Collection<Point> seeds,
@@ -84,52 +44,14 @@ final class RegionGrowing {
     IJ.log(String.format("First region id: %d (inc: %d)", regionId, regionIdInc));
     for (final Point seed : seeds) {
       // check if seed point is valid
-      final int seedValue = image.data[seed.x][seed.y];
+      final int seedValue = image.get(seed.x, seed.y);
       if (seedValue < binaryThreshold.thresholdMin
           || (binaryThreshold.thresholdMax != null && seedValue > binaryThreshold.thresholdMax)
-          || result.data[seed.x][seed.y] != UNPROCESSED_VALUE) {
+          || result.get(seed.x, seed.y) != UNPROCESSED_VALUE) {
         continue;
       }
   
-      // non-recursive solution
-      final Stack<Point> processingStack = new Stack<>();
-      
-      result.data[seed.x][seed.y] = regionId;
-      processingStack.push(new Point(seed.x, seed.y));
-      
-      do {
-        final Point nextPos = processingStack.pop();
-        
-        // check all children in n8
-        for (int xOffset = -1; xOffset <= 1; xOffset++) {
-          for (int yOffset = -1; yOffset <= 1; yOffset++) {
-            if (neighbour == Neighbour.N4) {
-              final int offsetSum = xOffset + yOffset;
-              if (!(offsetSum == -1 || offsetSum == 1)) {
-                continue; // ignore diagonal neighbours in case of N4-strategy
-              }
-            }
-            
-            final int nbX = nextPos.x + xOffset;
-            final int nbY = nextPos.y + yOffset;
-            
-            // check if valid range
-            if (nbX >= 0 && nbX < image.width && nbY >= 0 && nbY < image.height) {
-              final int nbValue = image.data[nbX][nbY];
-              if (result.data[nbX][nbY] == UNPROCESSED_VALUE) {
-                // set colors and continue processing
-                if (nbValue >= binaryThreshold.thresholdMin
-                    && (binaryThreshold.thresholdMax == null || nbValue <= binaryThreshold.thresholdMax)) {
-                  result.data[nbX][nbY] = regionId;
-                  processingStack.push(new Point(nbX, nbY));
-                } else {
-                  result.data[nbX][nbY] = binaryThreshold.background;
-                }
-              }
-            }
-          }
-        }
-      } while (!processingStack.empty());
+      fill(result, seed, neighbour, binaryThreshold, regionId);
       
       regionId += regionIdInc;
       if (regionId == binaryThreshold.background) {
@@ -141,30 +63,99 @@ final class RegionGrowing {
       IJ.log(String.format("Next region id: %d", regionId));
     }
     
-    finalizeResult(binaryThreshold, result);
-    
-    return result;
+    return finalizeResult(binaryThreshold, result);
   }
   
-  private Image createUnprocessedImage() {
-    final Image result = new Image(image.width, image.height);
-    for (int x = 0; x < result.width; x++) {
-      for (int y = 0; y < result.height; y++) {
-        result.data[x][y] = UNPROCESSED_VALUE;
+  /**
+   * Scanline flood fill: fills the whole horizontal span of a popped point and only pushes the start of every span in
+   * the rows above and below, N8 additionally looks one pixel beyond both ends of the span.
+   */
+  private void fill(final Image result,
+                    final Point seed,
+                    final Neighbour neighbour,
+                    final BinaryThreshold binaryThreshold,
+                    final int value) {
+    final int reach = neighbour == Neighbour.N4 ? 0 : 1;
+    final IntStack stack = new IntStack();
+    stack.push(seed.x, seed.y);
+    while (!stack.isEmpty()) {
+      final int y = stack.pop();
+      final int x = stack.pop();
+      if (!isFillable(result, x, y, binaryThreshold)) {
+        continue;
+      }
+      
+      int left = x;
+      while (left > 0 && isFillable(result, left - 1, y, binaryThreshold)) {
+        left--;
+      }
+      
+      int right = x;
+      while (right < image.width - 1 && isFillable(result, right + 1, y, binaryThreshold)) {
+        right++;
+      }
+      
+      for (int i = left; i <= right; i++) {
+        result.set(i, y, value);
+      }
+      
+      final int scanLeft = Math.max(0, left - reach);
+      final int scanRight = Math.min(image.width - 1, right + reach);
+      if (y > 0) {
+        pushSpans(stack, result, scanLeft, scanRight, y - 1, binaryThreshold);
+      }
+      
+      if (y < image.height - 1) {
+        pushSpans(stack, result, scanLeft, scanRight, y + 1, binaryThreshold);
       }
     }
+  }
+  
+  private void pushSpans(final IntStack stack,
+                         final Image result,
+                         final int left,
+                         final int right,
+                         final int y,
+                         final BinaryThreshold binaryThreshold) {
+    boolean inSpan = false;
+    for (int x = left; x <= right; x++) {
+      final boolean fillable = isFillable(result, x, y, binaryThreshold);
+      if (fillable && !inSpan) {
+        stack.push(x, y);
+      }
+      
+      inSpan = fillable;
+    }
+  }
+  
+  private boolean isFillable(final Image result, final int x, final int y, final BinaryThreshold binaryThreshold) {
+    if (result.get(x, y) != UNPROCESSED_VALUE) {
+      return false;
+    }
+    
+    final int value = image.get(x, y);
+    return value >= binaryThreshold.thresholdMin
+        && (binaryThreshold.thresholdMax == null || value <= binaryThreshold.thresholdMax);
+  }
+  
+  private Image createUnprocessedImage() {
+    // signed working buffer, so that UNPROCESSED_VALUE does not collide with a valid color
+    final Image result = new Image(null, PixelBuffer.createInt(image.width, image.height), image.maxColor);
+    result.pixels.fill(UNPROCESSED_VALUE);
     
     return result;
   }
   
-  private void finalizeResult(final BinaryThreshold binaryThreshold, final Image result) {
-    for (int x = 0; x < result.width; x++) {
-      for (int y = 0; y < result.height; y++) {
-        if (result.data[x][y] == UNPROCESSED_VALUE) {
-          result.data[x][y] = binaryThreshold.background;
-        }
+  private Image finalizeResult(final BinaryThreshold binaryThreshold, final Image workingImage) {
+    final Image result = new Image(image.width, image.height);
+    for (int y = 0; y < result.height; y++) {
+      for (int x = 0; x < result.width; x++) {
+        final int color = workingImage.get(x, y);
+        result.set(x, y, color == UNPROCESSED_VALUE ? binaryThreshold.background : color);
       }
     }
+    
+    return result;
   }
   
 }
@@ -33,7 +33,7 @@ public final class Segment implements ImageGenerator {
       final int sx = xOffset + xRadius;
       final int fix = center.x + xOffset;
       for (int yOffset = -yRadius; yOffset <= yRadius; yOffset++) {
-        segmentImage.data[sx][yOffset + yRadius] = fullImage.data[fix][center.y + yOffset];
+        segmentImage.set(sx, yOffset + yRadius, fullImage.get(fix, center.y + yOffset));
       }
     }
   }
@@ -56,7 +56,7 @@ public final class Segment implements ImageGenerator {
     final Image mask = new Image(fullImage.width, fullImage.height);
     for (int x = left; x < right; x++) {
       for (int y = top; y < bottom; y++) {
-        mask.data[x][y] = fullImage.maxColor;
+        mask.set(x, y, fullImage.maxColor);
       }
     }
     
@@ -27,6 +27,13 @@ public final class Segmentation {
     return new RegionGrowing(image).regionLabelling(seeds, neighbour, binaryThreshold);
   }
   
+  /**
+   * Labels all connected regions of pixels within the threshold interval (N4 or N8), see {@link ConnectedComponents}.
+   */
+  public ConnectedComponents connectedComponents(final Neighbour neighbour, final BinaryThreshold binaryThreshold) {
+    return new ConnectedComponents(image, neighbour, binaryThreshold);
+  }
+  
   public Image erosion(final Neighbour neighbour) {
     return new MathematicMorphology(neighbour).erosion(image);
   }
@@ -90,13 +97,7 @@ public final class Segmentation {
   }
   
   public Image hitOrMiss(final int[][] structure, final double quality) {
-    final Collection<Point> hits = hitOrMissPoints(structure, quality);
-    final Image result = new Image(image.width, image.height);
-    for (final Point point : hits) {
-      result.data[point.x][point.y] = image.maxColor;
-    }
-    
-    return result;
+    return hitOrMissHits(structure, quality).toImage(image.maxColor);
   }
   
   public Collection<Point> hitOrMissPoints(final int[][] structure) {
@@ -104,6 +105,10 @@ public final class Segmentation {
   }
   
   public Collection<Point> hitOrMissPoints(final int[][] structure, final double quality) {
+    return hitOrMissHits(structure, quality).toPoints();
+  }
+  
+  public Hits hitOrMissHits(final int[][] structure, final double quality) {
     return new MathematicMorphology(structure).hitOrMiss(image, quality);
   }
   
@@ -112,13 +117,7 @@ public final class Segmentation {
   }
   
   public Image hitOrMissAntiAlias(final int[][] structure, final double quality) {
-    final Collection<Point> hits = hitOrMissAntiAliasPoints(structure, quality);
-    final Image result = new Image(image.width, image.height);
-    for (final Point point : hits) {
-      result.data[point.x][point.y] = image.maxColor;
-    }
-    
-    return result;
+    return hitOrMissAntiAliasHits(structure, quality).toImage(image.maxColor);
   }
   
   public Collection<Point> hitOrMissAntiAliasPoints(final int[][] structure) {
@@ -126,6 +125,10 @@ public final class Segmentation {
   }
   
   public Collection<Point> hitOrMissAntiAliasPoints(final int[][] structure, final double quality) {
+    return hitOrMissAntiAliasHits(structure, quality).toPoints();
+  }
+  
+  public Hits hitOrMissAntiAliasHits(final int[][] structure, final double quality) {
     return new MathematicMorphology(structure).hitOrMissAntiAliased(image, quality);
   }
   
@@ -0,0 +1,226 @@
+package at.sschmid.hcc.sbv1.image.segmentation;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.utility.TileScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary erosion and dilation for structures that are a union of rectangles centered at the hotspot (rectangles,
+ * lines, crosses and symmetric convex disks like {@link Neighbour#N36}). Every rectangle is separated into a
+ * horizontal and a vertical line, which are processed with the van Herk/Gil-Werman algorithm: 3 comparisons per pixel
+ * independent of the line length. Erosion with a union is the intersection of the erosions with its parts, dilation
+ * the union of the dilations. As in {@link MathematicMorphology}, cells outside of the image are ignored.
+ */
+final class SeparableMorphology {
+  
+  private final List<int[]> rectangles;
+  
+  private SeparableMorphology(final List<int[]> rectangles) {
+    this.rectangles = rectangles;
+  }
+  
+  /**
+   * @param structure indexed by [x][y], cells with 1 belong to the structure
+   * @return null if the structure is not a union of centered rectangles
+   */
+  static SeparableMorphology decompose(final int[][] structure) {
+    final int rx = (structure.length - 1) / 2;
+    final int ry = (structure[0].length - 1) / 2;
+    
+    // half widths of the rows, -1 for empty rows
+    final int[] halfWidths = new int[ry + 1];
+    for (int dy = 0; dy <= ry; dy++) {
+      final int halfWidth = halfWidth(structure, rx, ry + dy);
+      if (halfWidth == Integer.MIN_VALUE || halfWidth != halfWidth(structure, rx, ry - dy)) {
+        return null; // not centered or not symmetric
+      }
+      
+      if (dy > 0 && halfWidth > halfWidths[dy - 1]) {
+        return null; // gets wider away from the hotspot
+      }
+      
+      halfWidths[dy] = halfWidth;
+    }
+    
+    if (halfWidths[0] < 0) {
+      return null;
+    }
+    
+    // one rectangle per distinct half width, reaching up to the last row that is at least as wide
+    final List<int[]> rectangles = new ArrayList<>();
+    for (int dy = 0; dy <= ry; dy++) {
+      if (halfWidths[dy] >= 0 && (dy == ry || halfWidths[dy + 1] != halfWidths[dy])) {
+        rectangles.add(new int[] { halfWidths[dy], dy });
+      }
+    }
+    
+    return new SeparableMorphology(rectangles);
+  }
+  
+  /**
+   * @return the half width of a contiguous run of ones centered at column rx, -1 for an empty row and
+   * {@link Integer#MIN_VALUE} for any other row
+   */
+  private static int halfWidth(final int[][] structure, final int rx, final int y) {
+    int halfWidth = -1;
+    while (halfWidth < rx && structure[rx + halfWidth + 1][y] == 1 && structure[rx - halfWidth - 1][y] == 1) {
+      halfWidth++;
+    }
+    
+    for (int x = 0; x < structure.length; x++) {
+      final boolean inside = Math.abs(x - rx) <= halfWidth;
+      if (inside != (structure[x][y] == 1)) {
+        return Integer.MIN_VALUE;
+      }
+    }
+    
+    return halfWidth;
+  }
+  
+  Image erosion(final Image image) {
+    return apply(image, true);
+  }
+  
+  Image dilation(final Image image) {
+    return apply(image, false);
+  }
+  
+  private Image apply(final Image image, final boolean erosion) {
+    final int width = image.width;
+    final int height = image.height;
+    final int[] mask = new int[image.size];
+    TileScheduler.shared().forEachRows(height, (yStart, yEnd) -> {
+      for (int y = yStart; y < yEnd; y++) {
+        for (int x = 0; x < width; x++) {
+          mask[y * width + x] = image.get(x, y) == image.maxColor ? 1 : 0;
+        }
+      }
+    });
+    
+    final int[] combined = new int[image.size];
+    final int[] rectangle = new int[image.size];
+    for (int i = 0; i < rectangles.size(); i++) {
+      final int rx = rectangles.get(i)[0];
+      final int ry = rectangles.get(i)[1];
+      TileScheduler.shared().forEachRows(height, (yStart, yEnd) -> {
+        final LineFilter filter = new LineFilter(2 * rx + 1, width, erosion);
+        for (int y = yStart; y < yEnd; y++) {
+          filter.apply(mask, y * width, 1, rectangle);
+        }
+      });
+      
+      TileScheduler.shared().forEachTile(width, 1, (x0, y0, x1, y1) -> {
+        final LineFilter filter = new LineFilter(2 * ry + 1, height, erosion);
+        for (int x = x0; x < x1; x++) {
+          filter.apply(rectangle, x, width, rectangle);
+        }
+      });
+      
+      if (i == 0) {
+        System.arraycopy(rectangle, 0, combined, 0, combined.length);
+      } else {
+        for (int j = 0; j < combined.length; j++) {
+          combined[j] = erosion ? combined[j] & rectangle[j] : combined[j] | rectangle[j];
+        }
+      }
+    }
+    
+    final Image result = new Image(width, height);
+    TileScheduler.shared().forEachRows(height, (yStart, yEnd) -> {
+      for (int y = yStart; y < yEnd; y++) {
+        for (int x = 0; x < width; x++) {
+          if (combined[y * width + x] == 1) {
+            result.set(x, y, image.maxColor);
+          }
+        }
+      }
+    });
+    
+    return result;
+  }
+  
+  /**
+   * van Herk/Gil-Werman minimum (erosion) or maximum (dilation) over a window of odd {@code size} along one line. The
+   * line is padded with the neutral element and split into blocks of the window size, the result at x is the
+   * combination of the suffix of the block left of the window center and the prefix of the block right of it.
+   */
+  private static final class LineFilter {
+    
+    private final int size;
+    private final int radius;
+    private final int length;
+    private final boolean minimum;
+    private final int neutral;
+    private final int[] line;
+    private final int[] prefixes;
+    private final int[] suffixes;
+    
+    private LineFilter(final int size, final int length, final boolean minimum) {
+      this.size = size;
+      this.radius = size / 2;
+      this.length = length;
+      this.minimum = minimum;
+      this.neutral = minimum ? 1 : 0;
+      
+      final int padded = ((length + 2 * radius + size - 1) / size) * size;
+      this.line = new int[padded];
+      this.prefixes = new int[padded];
+      this.suffixes = new int[padded];
+    }
+    
+    /**
+     * Filters the {@code length} values at offset, offset + stride, ... of {@code source} into {@code target}, which
+     * may be the same array.
+     */
+    private void apply(final int[] source, final int offset, final int stride, final int[] target) {
+      if (size == 1) {
+        if (source != target) {
+          for (int i = 0; i < length; i++) {
+            target[offset + i * stride] = source[offset + i * stride];
+          }
+        }
+        
+        return;
+      }
+      
+      final int padded = line.length;
+      for (int i = 0; i < radius; i++) {
+        line[i] = neutral;
+      }
+      
+      for (int i = 0; i < length; i++) {
+        line[radius + i] = source[offset + i * stride];
+      }
+      
+      for (int i = radius + length; i < padded; i++) {
+        line[i] = neutral;
+      }
+      
+      for (int blockStart = 0; blockStart < padded; blockStart += size) {
+        final int blockEnd = blockStart + size - 1;
+        prefixes[blockStart] = line[blockStart];
+        for (int i = blockStart + 1; i <= blockEnd; i++) {
+          prefixes[i] = combine(prefixes[i - 1], line[i]);
+        }
+        
+        suffixes[blockEnd] = line[blockEnd];
+        for (int i = blockEnd - 1; i >= blockStart; i--) {
+          suffixes[i] = combine(suffixes[i + 1], line[i]);
+        }
+      }
+      
+      // window of x in padded coordinates: [x; x + size - 1]
+      for (int x = 0; x < length; x++) {
+        target[offset + x * stride] = combine(suffixes[x], prefixes[x + size - 1]);
+      }
+    }
+    
+    private int combine(final int a, final int b) {
+      return minimum ? Math.min(a, b) : Math.max(a, b);
+    }
+    
+  }
+  
+}
@@ -0,0 +1,214 @@
+package at.sschmid.hcc.sbv1.image.segmentation;
+
+/**
+ * Global threshold selection from a histogram only, so the cost depends on the number of colors and not on the size of
+ * the image. Every method returns the first foreground color t, i.e. the classes are [0;t-1] and [t;maxColor].
+ */
+public enum ThresholdMethod {
+  
+  /**
+   * Rounded average color.
+   */
+  Mean {
+    @Override
+    public int threshold(final int[] histogram) {
+      final Sums sums = new Sums(histogram);
+      return (int) (sums.mean() + 0.5d);
+    }
+  },
+  
+  /**
+   * Iterative intermeans (isodata): starting at the average color, the threshold moves to the middle of the averages of
+   * the colors below and above it until it does not change anymore.
+   */
+  Isodata {
+    @Override
+    public int threshold(final int[] histogram) {
+      final Sums sums = new Sums(histogram);
+      double threshold = sums.mean();
+      while (true) {
+        // colors below the threshold are background
+        final int lastBackground = Math.min((int) Math.ceil(threshold) - 1, histogram.length - 1);
+        final long backgroundCount = sums.count(lastBackground);
+        final double backgroundSum = sums.sum(lastBackground);
+        final long foregroundCount = sums.total - backgroundCount;
+        final double foregroundSum = sums.totalSum - backgroundSum;
+        
+        final double backgroundAverage = backgroundCount > 0 ? backgroundSum / backgroundCount : 0;
+        final double foregroundAverage = foregroundCount > 0 ? foregroundSum / foregroundCount : 0;
+        final double nextThreshold = (backgroundAverage + foregroundAverage) / 2.0d;
+        if (nextThreshold == threshold) {
+          return (int) (threshold + 0.5d);
+        }
+        
+        threshold = nextThreshold;
+      }
+    }
+  },
+  
+  /**
+   * Otsu: maximizes the between-class variance.
+   */
+  Otsu {
+    @Override
+    public int threshold(final int[] histogram) {
+      final Sums sums = new Sums(histogram);
+      double bestVariance = -1d;
+      int best = -1;
+      for (int k = 0; k < histogram.length - 1; k++) {
+        final long backgroundCount = sums.count(k);
+        final long foregroundCount = sums.total - backgroundCount;
+        if (backgroundCount == 0 || foregroundCount == 0) {
+          continue;
+        }
+        
+        final double backgroundMean = sums.sum(k) / backgroundCount;
+        final double foregroundMean = (sums.totalSum - sums.sum(k)) / foregroundCount;
+        final double difference = backgroundMean - foregroundMean;
+        final double variance = (double) backgroundCount * foregroundCount * difference * difference;
+        if (variance > bestVariance) {
+          bestVariance = variance;
+          best = k;
+        }
+      }
+      
+      return best < 0 ? Mean.threshold(histogram) : best + 1;
+    }
+  },
+  
+  /**
+   * Kapur, Sahoo and Wong: maximizes the sum of the entropies of both classes.
+   */
+  Kapur {
+    @Override
+    public int threshold(final int[] histogram) {
+      final Sums sums = new Sums(histogram);
+      
+      // prefix sums of n * ln(n), the entropy of a class with c pixels is ln(c) - sum(n * ln(n)) / c
+      final double[] nLogN = new double[histogram.length];
+      double cumulated = 0d;
+      for (int i = 0; i < histogram.length; i++) {
+        cumulated += histogram[i] > 0 ? histogram[i] * Math.log(histogram[i]) : 0d;
+        nLogN[i] = cumulated;
+      }
+      
+      double bestEntropy = Double.NEGATIVE_INFINITY;
+      int best = -1;
+      for (int k = 0; k < histogram.length - 1; k++) {
+        final long backgroundCount = sums.count(k);
+        final long foregroundCount = sums.total - backgroundCount;
+        if (backgroundCount == 0 || foregroundCount == 0) {
+          continue;
+        }
+        
+        final double entropy = Math.log(backgroundCount) - nLogN[k] / backgroundCount
+            + Math.log(foregroundCount) - (cumulated - nLogN[k]) / foregroundCount;
+        if (entropy > bestEntropy) {
+          bestEntropy = entropy;
+          best = k;
+        }
+      }
+      
+      return best < 0 ? Mean.threshold(histogram) : best + 1;
+    }
+  },
+  
+  /**
+   * Triangle (Zack): the line from the histogram peak to the end of the longer tail, the threshold is where the
+   * histogram is farthest below that line.
+   */
+  Triangle {
+    @Override
+    public int threshold(final int[] histogram) {
+      int peak = 0;
+      int first = -1;
+      int last = -1;
+      for (int i = 0; i < histogram.length; i++) {
+        if (histogram[i] > histogram[peak]) {
+          peak = i;
+        }
+        
+        if (histogram[i] > 0) {
+          if (first < 0) {
+            first = i;
+          }
+          
+          last = i;
+        }
+      }
+      
+      if (first < 0 || first == last) {
+        return Mean.threshold(histogram);
+      }
+      
+      // the tail ends one color beyond the last occurring one, where the histogram reaches 0
+      final boolean rightTail = last - peak >= peak - first;
+      final int end = rightTail ? last + 1 : first - 1;
+      final double height = histogram[peak];
+      double bestDistance = -1d;
+      int best = peak;
+      final int step = rightTail ? 1 : -1;
+      for (int i = peak; i != end; i += step) {
+        final double line = height * (end - i) / (end - peak);
+        final double distance = line - histogram[i];
+        if (distance > bestDistance) {
+          bestDistance = distance;
+          best = i;
+        }
+      }
+      
+      // the knee belongs to the class of the peak
+      return rightTail ? best + 1 : best;
+    }
+  };
+  
+  /**
+   * @param histogram number of pixels per color
+   * @return the first foreground color
+   */
+  public abstract int threshold(final int[] histogram);
+  
+  /**
+   * Cumulative counts and color sums of a histogram.
+   */
+  private static final class Sums {
+    
+    private final long[] counts;
+    private final double[] sums;
+    private final long total;
+    private final double totalSum;
+    
+    private Sums(final int[] histogram) {
+      counts = new long[histogram.length];
+      sums = new double[histogram.length];
+      long count = 0;
+      double sum = 0d;
+      for (int i = 0; i < histogram.length; i++) {
+        count += histogram[i];
+        sum += (double) histogram[i] * i;
+        counts[i] = count;
+        sums[i] = sum;
+      }
+      
+      total = count;
+      totalSum = sum;
+    }
+    
+    /**
+     * @return number of pixels with colors in [0;color]
+     */
+    private long count(final int color) {
+      return color < 0 ? 0 : counts[color];
+    }
+    
+    private double sum(final int color) {
+      return color < 0 ? 0d : sums[color];
+    }
+    
+    private double mean() {
+      return total > 0 ? totalSum / total : 0d;
+    }
+    
+  }
+  
+}
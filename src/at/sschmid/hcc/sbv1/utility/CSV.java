@@ -49,7 +49,18 @@ public final class CSV implements AutoCloseable {
    * @param subDirectory The subdirectory relative to the directory defined in {@link #defaultConfig}.
    */
   public CSV(final String filename, final String subDirectory) {
-    this.config = new Config(defaultConfig);
+    this(filename, subDirectory, defaultConfig);
+  }
+  
+  /**
+   * Initialize a new CSV-file with its own configuration, e.g. an output directory chosen at runtime.
+   *
+   * @param filename     The filename for the output file.
+   * @param subDirectory The subdirectory relative to the output directory of {@code config}.
+   * @param config       {@link Config}-instance, it is copied so later changes do not affect this file.
+   */
+  public CSV(final String filename, final String subDirectory, final Config config) {
+    this.config = new Config(config);
     
     final StringBuilder file = new StringBuilder(config.outputDirectory);
     if (subDirectory != null && !subDirectory.isEmpty()) {
@@ -64,11 +75,19 @@ public final class CSV implements AutoCloseable {
         .toString();
   }
   
+  /**
+   * @return a copy of the default configuration, to be adapted for a single CSV-file.
+   */
+  public static Config getDefaultConfig() {
+    return new Config(defaultConfig);
+  }
+  
   /**
    * Sets a default configuration for any future CSV-files. Note that previously create {@link CSV}-instances will not
    * be affected by this change.
    *
    * @param defaultConfig {@link Config}-instance for future {@link CSV}-instances.
+   * @throws IllegalArgumentException if {@code defaultConfig} is null.
    */
   public static void setDefaultConfig(Config defaultConfig) {
     if (defaultConfig == null) {
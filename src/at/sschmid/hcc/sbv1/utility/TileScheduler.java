@@ -0,0 +1,213 @@
+package at.sschmid.hcc.sbv1.utility;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Splits an image area into tiles and processes them on a shared, long-lived fork/join pool. Tiles are given as
+ * half-open ranges [x0;x1) x [y0;y1), callers must only write to pixels inside their own tile.
+ */
+public final class TileScheduler {
+  
+  public static final int DEFAULT_TILE_SIZE = 64;
+  
+  private static final ForkJoinPool POOL = new ForkJoinPool(Utility.threadCount());
+  
+  private static volatile TileScheduler shared = new TileScheduler(DEFAULT_TILE_SIZE, DEFAULT_TILE_SIZE);
+  
+  public static TileScheduler shared() {
+    return shared;
+  }
+  
+  /**
+   * Replaces the scheduler returned by {@link #shared()}, e.g. to tune the tile size for a machine.
+   */
+  public static void setShared(final TileScheduler scheduler) {
+    if (scheduler == null) {
+      throw new IllegalArgumentException("scheduler must not be null");
+    }
+    
+    shared = scheduler;
+  }
+  
+  public static TileScheduler create(final int tileWidth, final int tileHeight) {
+    return new TileScheduler(tileWidth, tileHeight);
+  }
+  
+  public static ForkJoinPool pool() {
+    return POOL;
+  }
+  
+  public final int tileWidth;
+  public final int tileHeight;
+  
+  private TileScheduler(final int tileWidth, final int tileHeight) {
+    if (tileWidth < 1 || tileHeight < 1) {
+      throw new IllegalArgumentException(String.format("Invalid tile size %dx%d", tileWidth, tileHeight));
+    }
+    
+    this.tileWidth = tileWidth;
+    this.tileHeight = tileHeight;
+  }
+  
+  public void forEachTile(final int width, final int height, final TileAction action) {
+    final Tiling tiling = new Tiling(width, height, tileWidth, tileHeight);
+    if (tiling.count == 1) {
+      action.process(0, 0, width, height);
+    } else if (tiling.count > 1) {
+      invoke(new TileActionTask(tiling, action, 0, tiling.count));
+    }
+  }
+  
+  /**
+   * Processes bands of {@link #tileHeight} full rows, for operations that walk whole rows.
+   */
+  public void forEachRows(final int height, final RowAction action) {
+    final Tiling tiling = new Tiling(1, height, 1, tileHeight);
+    if (tiling.count == 1) {
+      action.process(0, height);
+    } else if (tiling.count > 1) {
+      invoke(new TileActionTask(tiling, (x0, y0, x1, y1) -> action.process(y0, y1), 0, tiling.count));
+    }
+  }
+  
+  /**
+   * @return the sum of all tile results. Tiles are always combined in the same order, so the result is reproducible.
+   */
+  public double sumTiles(final int width, final int height, final TileFunction function) {
+    final Tiling tiling = new Tiling(width, height, tileWidth, tileHeight);
+    if (tiling.count == 0) {
+      return 0d;
+    }
+    
+    if (tiling.count == 1) {
+      return function.apply(0, 0, width, height);
+    }
+    
+    return invoke(new TileSumTask(tiling, function, 0, tiling.count));
+  }
+  
+  private static <T> T invoke(final ForkJoinTask<T> task) {
+    // nested calls from a tile of this pool join the current computation instead of blocking a worker
+    return ForkJoinTask.getPool() == POOL ? task.invoke() : POOL.invoke(task);
+  }
+  
+  @FunctionalInterface
+  public interface TileAction {
+    
+    void process(final int x0, final int y0, final int x1, final int y1);
+    
+  }
+  
+  @FunctionalInterface
+  public interface RowAction {
+    
+    void process(final int yStart, final int yEnd);
+    
+  }
+  
+  @FunctionalInterface
+  public interface TileFunction {
+    
+    double apply(final int x0, final int y0, final int x1, final int y1);
+    
+  }
+  
+  private static final class Tiling {
+    
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int columns;
+    private final int count;
+    
+    private Tiling(final int width, final int height, final int tileWidth, final int tileHeight) {
+      if (width < 0 || height < 0) {
+        throw new IllegalArgumentException(String.format("Invalid area %dx%d", width, height));
+      }
+      
+      this.width = width;
+      this.height = height;
+      this.tileWidth = tileWidth;
+      this.tileHeight = tileHeight;
+      this.columns = (width + tileWidth - 1) / tileWidth;
+      this.count = columns * ((height + tileHeight - 1) / tileHeight);
+    }
+    
+    private void process(final int tile, final TileAction action) {
+      final int x0 = (tile % columns) * tileWidth;
+      final int y0 = (tile / columns) * tileHeight;
+      action.process(x0, y0, Math.min(x0 + tileWidth, width), Math.min(y0 + tileHeight, height));
+    }
+    
+    private double apply(final int tile, final TileFunction function) {
+      final int x0 = (tile % columns) * tileWidth;
+      final int y0 = (tile / columns) * tileHeight;
+      return function.apply(x0, y0, Math.min(x0 + tileWidth, width), Math.min(y0 + tileHeight, height));
+    }
+    
+  }
+  
+  private static final class TileActionTask extends RecursiveAction {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final Tiling tiling;
+    private final TileAction action;
+    private final int from;
+    private final int to;
+    
+    private TileActionTask(final Tiling tiling, final TileAction action, final int from, final int to) {
+      this.tiling = tiling;
+      this.action = action;
+      this.from = from;
+      this.to = to;
+    }
+    
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        tiling.process(from, action);
+      } else {
+        final int mid = (from + to) >>> 1;
+        invokeAll(new TileActionTask(tiling, action, from, mid), new TileActionTask(tiling, action, mid, to));
+      }
+    }
+    
+  }
+  
+  private static final class TileSumTask extends RecursiveTask<Double> {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final Tiling tiling;
+    private final TileFunction function;
+    private final int from;
+    private final int to;
+    
+    private TileSumTask(final Tiling tiling, final TileFunction function, final int from, final int to) {
+      this.tiling = tiling;
+      this.function = function;
+      this.from = from;
+      this.to = to;
+    }
+    
+    @Override
+    protected Double compute() {
+      if (to - from == 1) {
+        return tiling.apply(from, function);
+      }
+      
+      final int mid = (from + to) >>> 1;
+      final TileSumTask right = new TileSumTask(tiling, function, mid, to);
+      right.fork();
+      final double left = new TileSumTask(tiling, function, from, mid).compute();
+      return left + right.join();
+    }
+    
+  }
+  
+}
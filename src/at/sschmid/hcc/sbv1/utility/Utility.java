@@ -1,7 +1,15 @@
 package at.sschmid.hcc.sbv1.utility;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public final class Utility {
   
@@ -19,8 +27,63 @@ public final class Utility {
     return Executors.newFixedThreadPool(threads);
   }
   
+  /**
+   * Runs all tasks on the shared pool of {@link TileScheduler} and waits for them to complete.
+   *
+   * @return the results in the order of {@code tasks}
+   */
+  public static <T> List<T> invokeAll(final Collection<? extends Callable<T>> tasks) {
+    return invokeAll(TileScheduler.pool(), tasks);
+  }
+  
+  /**
+   * Submits all tasks to {@code executor} and waits for them to complete. If a task fails or the calling thread is
+   * interrupted, the remaining tasks are cancelled and the failure is rethrown (interrupts as
+   * {@link CancellationException} with the interrupt flag restored).
+   *
+   * @return the results in the order of {@code tasks}
+   */
+  public static <T> List<T> invokeAll(final ExecutorService executor, final Collection<? extends Callable<T>> tasks) {
+    final List<Future<T>> futures = new ArrayList<>(tasks.size());
+    for (final Callable<T> task : tasks) {
+      futures.add(executor.submit(task));
+    }
+    
+    final List<T> results = new ArrayList<>(futures.size());
+    try {
+      for (final Future<T> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      cancel(futures);
+      Thread.currentThread().interrupt();
+      final CancellationException cancellation = new CancellationException("Interrupted while waiting for tasks");
+      cancellation.initCause(e);
+      throw cancellation;
+    } catch (ExecutionException e) {
+      cancel(futures);
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      
+      throw new IllegalStateException("Task failed", cause);
+    }
+    
+    return results;
+  }
+  
   public static <T extends Runnable> void executeAndJoin(final Iterable<T> workers) {
-    executeAndJoin(threadPool(), workers);
+    final List<Callable<Object>> tasks = new ArrayList<>();
+    for (final Runnable worker : workers) {
+      tasks.add(Executors.callable(worker));
+    }
+    
+    invokeAll(tasks);
   }
   
   public static <T extends Runnable> void executeAndJoin(final ExecutorService threadPool,
@@ -32,14 +95,17 @@ public final class Utility {
     join(threadPool);
   }
   
+  /**
+   * Shuts {@code threadPool} down and blocks until all submitted tasks have completed. If the calling thread is
+   * interrupted, running tasks are cancelled and the interrupt flag is restored.
+   */
   public static void join(final ExecutorService threadPool) {
     threadPool.shutdown();
-    while (!threadPool.isTerminated()) {
-      try {
-        Thread.sleep(100);
-      } catch (InterruptedException e) {
-        // ignore
-      }
+    try {
+      threadPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      threadPool.shutdownNow();
+      Thread.currentThread().interrupt();
     }
   }
   
@@ -47,4 +113,10 @@ public final class Utility {
     return x != 0 ? Math.log(x) / NATURAL_LOG_BASE_TWO : 0;
   }
   
+  private static void cancel(final Collection<? extends Future<?>> futures) {
+    for (final Future<?> future : futures) {
+      future.cancel(true);
+    }
+  }
+  
 }
@@ -0,0 +1,139 @@
+package at.sschmid.hcc.sbv1.image;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public final class ConvolutionFilterTest {
+  
+  private static final int WIDTH = 37;
+  private static final int HEIGHT = 23;
+  private static final double DELTA = 1e-9;
+  
+  private double[][] image;
+  
+  @Before
+  public void setup() {
+    final Random random = new Random(42);
+    image = new double[WIDTH][HEIGHT];
+    for (int x = 0; x < WIDTH; x++) {
+      for (int y = 0; y < HEIGHT; y++) {
+        image[x][y] = random.nextInt(256);
+      }
+    }
+  }
+  
+  @Test
+  public void separableMeanMask() {
+    final int radius = 4;
+    final double[][] kernel = ConvolutionFilter.GetMeanMask(radius);
+    Assert.assertNotNull(ConvolutionFilter.SeparateKernel(kernel, radius));
+    
+    assertEquals(naive(kernel, radius, true),
+        ConvolutionFilter.ConvolveDoubleNorm(image, WIDTH, HEIGHT, kernel, radius));
+  }
+  
+  @Test
+  public void separableSobel() {
+    final int radius = 1;
+    final double[][] kernel = { { 1.0, 0.0, -1.0 }, { 2.0, 0.0, -2.0 }, { 1.0, 0.0, -1.0 } };
+    Assert.assertNotNull(ConvolutionFilter.SeparateKernel(kernel, radius));
+    
+    assertEquals(naive(kernel, radius, false), ConvolutionFilter.ConvolveDouble(image, WIDTH, HEIGHT, kernel, radius));
+  }
+  
+  @Test
+  public void nonSeparable() {
+    final int radius = 1;
+    final double[][] kernel = { { 0.0, 1.0, 0.0 }, { 1.0, 1.0, 1.0 }, { 0.0, 1.0, 0.0 } };
+    Assert.assertNull(ConvolutionFilter.SeparateKernel(kernel, radius));
+    
+    assertEquals(naive(kernel, radius, true),
+        ConvolutionFilter.ConvolveDoubleNorm(image, WIDTH, HEIGHT, kernel, radius));
+    assertEquals(naive(kernel, radius, false), ConvolutionFilter.ConvolveDouble(image, WIDTH, HEIGHT, kernel, radius));
+  }
+  
+  @Test
+  public void cachedGaussMask() {
+    final double[][] kernel = ConvolutionFilter.GetGaussMask(3, 1.5d, true);
+    double sum = 0d;
+    for (final double[] column : kernel) {
+      for (final double value : column) {
+        sum += value;
+      }
+    }
+    Assert.assertEquals(1d, sum, DELTA);
+    
+    kernel[3][3] = -1d;
+    final double[][] kernel2 = ConvolutionFilter.GetGaussMask(3, 1.5d, true);
+    Assert.assertNotEquals(-1d, kernel2[3][3], DELTA);
+    Assert.assertNotSame(kernel, kernel2);
+  }
+  
+  @Test
+  public void recursiveGaussMatchesKernel() {
+    final int width = 200;
+    final int height = 180;
+    final Random random = new Random(1);
+    final double[][] input = new double[width][height];
+    for (int x = 0; x < width; x++) {
+      for (int y = 0; y < height; y++) {
+        input[x][y] = random.nextInt(256);
+      }
+    }
+    
+    for (final double sigma : new double[] { 3d, 5d, 9d, 15d }) {
+      final int radius = (int) Math.ceil(4 * sigma);
+      final double[] kernel = new double[2 * radius + 1];
+      for (int i = -radius; i <= radius; i++) {
+        kernel[i + radius] = Math.exp(-(i * i) / (2 * sigma * sigma));
+      }
+      
+      final double[][] expected = ConvolutionFilter.ConvolveSeparable(input, width, height, kernel, kernel, radius, true);
+      final double[][] actual = ConvolutionFilter.ConvolveGaussRecursive(input, width, height, sigma);
+      
+      // borders differ by design (renormalized kernel vs. edge extension), compare the inner region only
+      double maxError = 0d;
+      for (int x = radius; x < width - radius; x++) {
+        for (int y = radius; y < height - radius; y++) {
+          maxError = Math.max(maxError, Math.abs(expected[x][y] - actual[x][y]));
+        }
+      }
+      
+      Assert.assertTrue(String.format("sigma=%.1f, max error=%.3f", sigma, maxError), maxError < 2d);
+    }
+  }
+  
+  private double[][] naive(final double[][] kernel, final int radius, final boolean normalized) {
+    final double[][] result = new double[WIDTH][HEIGHT];
+    for (int x = 0; x < WIDTH; x++) {
+      for (int y = 0; y < HEIGHT; y++) {
+        double sum = 0d;
+        double weights = 0d;
+        for (int xOffset = -radius; xOffset <= radius; xOffset++) {
+          for (int yOffset = -radius; yOffset <= radius; yOffset++) {
+            final int nbx = x + xOffset;
+            final int nby = y + yOffset;
+            if (nbx >= 0 && nbx < WIDTH && nby >= 0 && nby < HEIGHT) {
+              sum += image[nbx][nby] * kernel[xOffset + radius][yOffset + radius];
+              weights += kernel[xOffset + radius][yOffset + radius];
+            }
+          }
+        }
+        
+        result[x][y] = normalized ? sum / weights : sum;
+      }
+    }
+    
+    return result;
+  }
+  
+  private static void assertEquals(final double[][] expected, final double[][] actual) {
+    for (int x = 0; x < expected.length; x++) {
+      Assert.assertArrayEquals(expected[x], actual[x], DELTA);
+    }
+  }
+  
+}
@@ -0,0 +1,37 @@
+package at.sschmid.hcc.sbv1.image;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class GaussianPyramidTest {
+  
+  @Test
+  public void levelSizes() {
+    final GaussianPyramid pyramid = new Image(101, 64).pyramid(4);
+    Assert.assertEquals(4, pyramid.levels());
+    Assert.assertEquals(101, pyramid.level(0).width);
+    Assert.assertEquals(51, pyramid.level(1).width);
+    Assert.assertEquals(26, pyramid.level(2).width);
+    Assert.assertEquals(13, pyramid.level(3).width);
+    Assert.assertEquals(8, pyramid.level(3).height);
+  }
+  
+  @Test
+  public void levelsAreLimitedBySize() {
+    Assert.assertEquals(2, new Image(40, 20).pyramid(10).levels());
+  }
+  
+  @Test
+  public void constantImageStaysConstant() {
+    final Image image = new Image(30, 30);
+    image.pixels.fill(123);
+    
+    final Image level = image.pyramid(2).level(1);
+    for (int y = 0; y < level.height; y++) {
+      for (int x = 0; x < level.width; x++) {
+        Assert.assertEquals(123, level.get(x, y));
+      }
+    }
+  }
+  
+}
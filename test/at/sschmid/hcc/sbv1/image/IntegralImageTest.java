@@ -0,0 +1,69 @@
+package at.sschmid.hcc.sbv1.image;
+
+import at.sschmid.hcc.sbv1.image.imagej.ImageJUtility;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public final class IntegralImageTest {
+  
+  private static final int WIDTH = 31;
+  private static final int HEIGHT = 19;
+  
+  private Image image;
+  
+  @Before
+  public void setup() {
+    final Random random = new Random(7);
+    image = new Image(WIDTH, HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        image.set(x, y, random.nextInt(256));
+      }
+    }
+  }
+  
+  @Test
+  public void sumAndVariance() {
+    final IntegralImage integralImage = image.integralImage();
+    
+    long sum = 0;
+    long squaredSum = 0;
+    for (int y = 2; y <= 10; y++) {
+      for (int x = 3; x <= 7; x++) {
+        final int color = image.get(x, y);
+        sum += color;
+        squaredSum += color * color;
+      }
+    }
+    
+    final double mean = sum / 45d;
+    Assert.assertEquals(sum, integralImage.sum(3, 2, 7, 10));
+    Assert.assertEquals(mean, integralImage.mean(3, 2, 7, 10), 1e-9);
+    Assert.assertEquals(squaredSum / 45d - mean * mean, integralImage.variance(3, 2, 7, 10), 1e-9);
+    Assert.assertEquals(image.get(0, 0), integralImage.sum(-5, -5, 0, 0));
+  }
+  
+  @Test
+  public void meanEqualsConvolution() {
+    final int radius = 3;
+    final double[][] expected = ConvolutionFilter.ConvolveDoubleNorm(ImageJUtility.convertToDoubleArr2D(image),
+        WIDTH,
+        HEIGHT,
+        ConvolutionFilter.GetMeanMask(radius),
+        radius);
+    final IntegralImage integralImage = image.integralImage();
+    final Image result = integralImage.mean(radius);
+    
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        final double mean = integralImage.mean(x - radius, y - radius, x + radius, y + radius);
+        Assert.assertEquals(expected[x][y], mean, 1e-9);
+        Assert.assertEquals((int) (mean + 0.5d), result.get(x, y));
+      }
+    }
+  }
+  
+}
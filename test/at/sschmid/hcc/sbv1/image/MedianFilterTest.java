@@ -0,0 +1,46 @@
+package at.sschmid.hcc.sbv1.image;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public final class MedianFilterTest {
+  
+  @Test
+  public void equalsSortedMask() {
+    final Random random = new Random(3);
+    final Image image = new Image(47, 29);
+    for (int y = 0; y < image.height; y++) {
+      for (int x = 0; x < image.width; x++) {
+        image.set(x, y, random.nextInt(256));
+      }
+    }
+    
+    for (final int radius : new int[] { 0, 1, 4, 20 }) {
+      final Image result = image.median(radius).getResult();
+      for (int y = 0; y < image.height; y++) {
+        for (int x = 0; x < image.width; x++) {
+          Assert.assertEquals(String.format("r=%d [%d;%d]", radius, x, y), median(image, x, y, radius), result.get(x, y));
+        }
+      }
+    }
+  }
+  
+  private static int median(final Image image, final int x, final int y, final int radius) {
+    final int[] mask = new int[(2 * radius + 1) * (2 * radius + 1)];
+    int count = 0;
+    for (int nbx = x - radius; nbx <= x + radius; nbx++) {
+      for (int nby = y - radius; nby <= y + radius; nby++) {
+        if (nbx >= 0 && nbx < image.width && nby >= 0 && nby < image.height) {
+          mask[count++] = image.get(nbx, nby);
+        }
+      }
+    }
+    
+    Arrays.sort(mask, 0, count);
+    return mask[(count - 1) / 2];
+  }
+  
+}
@@ -0,0 +1,92 @@
+package at.sschmid.hcc.sbv1.image;
+
+import at.sschmid.hcc.sbv1.utility.TileScheduler;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class PixelBufferTest {
+  
+  @Test
+  public void typeBySelectedMaxColor() {
+    Assert.assertTrue(PixelBuffer.create(3, 2, 255) instanceof BytePixelBuffer);
+    Assert.assertTrue(PixelBuffer.create(3, 2, 4095) instanceof ShortPixelBuffer);
+    Assert.assertTrue(PixelBuffer.create(3, 2, 1 << 20) instanceof IntPixelBuffer);
+  }
+  
+  @Test
+  public void unsignedValues() {
+    final PixelBuffer bytes = PixelBuffer.create(2, 2, 255);
+    bytes.set(1, 1, 255);
+    Assert.assertEquals(255, bytes.get(1, 1));
+    Assert.assertEquals(3, bytes.index(1, 1));
+    
+    final PixelBuffer shorts = PixelBuffer.create(2, 2, 65535);
+    shorts.set(0, 1, 65535);
+    Assert.assertEquals(65535, shorts.get(0, 1));
+  }
+  
+  @Test
+  public void imageFromColumnMajorArray() {
+    final int[][] data = {
+        { 1, 2, 3 },
+        { 4, 5, 6 }
+    };
+    final Image image = new Image(data, 2, 3);
+    
+    Assert.assertEquals(4, image.get(1, 0));
+    Assert.assertEquals(3, image.get(0, 2));
+    Assert.assertEquals(2, image.pixels.get(2));
+    Assert.assertArrayEquals(data, image.toArray());
+  }
+  
+  @Test
+  public void copyIsIndependent() {
+    final Image image = new Image(2, 2);
+    image.set(0, 0, 42);
+    final Image copy = new Image(image);
+    copy.set(0, 0, 7);
+    
+    Assert.assertEquals(42, image.get(0, 0));
+    Assert.assertEquals(7, copy.get(0, 0));
+  }
+  
+  @Test
+  public void copyOnWrite() {
+    final byte[] original = { 1, 2, 3, 4 };
+    final BytePixelBuffer buffer = PixelBuffer.wrapCopyOnWrite(original, 2, 2);
+    Assert.assertSame(original, buffer.share());
+    
+    buffer.set(1, 1, 200);
+    Assert.assertEquals(200, buffer.get(1, 1));
+    Assert.assertEquals(4, original[3]);
+    Assert.assertFalse(buffer.isShared());
+  }
+  
+  @Test
+  public void concurrentWritesToSharedBuffer() {
+    final int size = 256;
+    for (int run = 0; run < 20; run++) {
+      final byte[] original = new byte[size * size];
+      final BytePixelBuffer buffer = PixelBuffer.wrapCopyOnWrite(original, size, size);
+      buffer.share();
+      
+      // many small tiles race for the copy, none of their writes may end up in a discarded array
+      TileScheduler.create(8, 8).forEachTile(size, size, (x0, y0, x1, y1) -> {
+        for (int y = y0; y < y1; y++) {
+          for (int x = x0; x < x1; x++) {
+            buffer.set(x, y, 1 + (x + y) % 200);
+          }
+        }
+      });
+      
+      for (int y = 0; y < size; y++) {
+        for (int x = 0; x < size; x++) {
+          Assert.assertEquals(1 + (x + y) % 200, buffer.get(x, y));
+        }
+      }
+      
+      Assert.assertEquals(0, original[size * size - 1]);
+    }
+  }
+  
+}
@@ -5,6 +5,8 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Random;
+
 public final class DistanceMapTest {
   
   private Image image;
@@ -58,4 +60,57 @@ public final class DistanceMapTest {
     Assert.assertArrayEquals(expectedMap, result);
   }
   
+  @Test
+  public void testEuklidExact() {
+    final DistanceMap distanceMap = image.distanceMap(DistanceMetric.EuklidExact);
+    
+    final double sqrt2 = Math.sqrt(2);
+    final double[][] expectedMap = {
+        { 1, 0, 1, 0, 1 },
+        { 1, 0, 1, 0, 1 },
+        { 1, 0, 0, 0, 1 },
+        { 1, 0, 1, 1, sqrt2 },
+        { 1, 0, 1, 2, Math.sqrt(5) },
+        { sqrt2, 1, sqrt2, Math.sqrt(5), Math.sqrt(10) },
+    };
+    
+    final double[][] result = distanceMap.calculate();
+    Assert.assertArrayEquals(expectedMap, result);
+  }
+  
+  @Test
+  public void testEuklidExactMatchesBruteForce() {
+    final int width = 150;
+    final int height = 97;
+    final Random random = new Random(5);
+    final Image sparse = new Image(width, height);
+    for (int i = 0; i < 40; i++) {
+      sparse.set(random.nextInt(width), random.nextInt(height), 7);
+    }
+    
+    final int[] result = sparse.distanceMap(DistanceMetric.EuklidExact, 7).calculateSquared();
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int expected = Integer.MAX_VALUE;
+        for (int v = 0; v < height; v++) {
+          for (int u = 0; u < width; u++) {
+            if (sparse.get(u, v) == 7) {
+              expected = Math.min(expected, (x - u) * (x - u) + (y - v) * (y - v));
+            }
+          }
+        }
+        
+        Assert.assertEquals(expected, result[y * width + x]);
+      }
+    }
+  }
+  
+  @Test
+  public void testEuklidExactWithoutForeground() {
+    final float[] result = new Image(4, 3).distanceMap(DistanceMetric.EuklidExact).calculateFloat();
+    for (final float distance : result) {
+      Assert.assertEquals(Float.POSITIVE_INFINITY, distance, 0f);
+    }
+  }
+  
 }
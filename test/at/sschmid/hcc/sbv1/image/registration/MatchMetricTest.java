@@ -0,0 +1,133 @@
+package at.sschmid.hcc.sbv1.image.registration;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.image.resampling.AffineMatrix;
+import at.sschmid.hcc.sbv1.image.resampling.Interpolation;
+import at.sschmid.hcc.sbv1.image.resampling.Transformations;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public final class MatchMetricTest {
+  
+  private static final int WIDTH = 83;
+  private static final int HEIGHT = 71;
+  
+  private Image image1;
+  private Image image2;
+  private AffineMatrix pose;
+  
+  @Before
+  public void setup() {
+    final Random random = new Random(3);
+    image1 = new Image(WIDTH, HEIGHT);
+    image2 = new Image(WIDTH, HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        image1.set(x, y, random.nextInt(256));
+        image2.set(x, y, (x * 3 + y * 2 + random.nextInt(16)) % 256);
+      }
+    }
+    
+    pose = new Transformations().translate(4, -3).rotate(7.3).toMatrix(WIDTH, HEIGHT);
+  }
+  
+  @Test
+  public void fusedSquaredSumOfErrors() {
+    assertFusedMatchesResampled(MatchMetric.create(MatchMetricType.SSE, image1, image2));
+  }
+  
+  @Test
+  public void fusedMutualInformation() {
+    assertFusedMatchesResampled(MatchMetric.create(MatchMetricType.MI, image1, image2));
+  }
+  
+  @Test
+  public void mutualInformationMatchesHistograms() {
+    final MatchMetric metric = MatchMetric.create(MatchMetricType.MI, image1, image2);
+    final double expected = image2.entropy() + image1.entropy() - image1.entropy2d(image2);
+    Assert.assertEquals(expected, metric.getMatch(image1, image2), 1e-9);
+  }
+  
+  @Test
+  public void binnedMutualInformation() {
+    final MatchMetric metric = MatchMetric.mutualInformation(32, image1, image2);
+    assertFusedMatchesResampled(metric);
+    Assert.assertTrue(metric.isBetter(metric.getMatch(image1, image1), metric.getMatch(image1, image2)));
+    Assert.assertTrue(metric.getMatch(image1, image2) <= Math.log(32) / Math.log(2) + 1e-9);
+  }
+  
+  @Test
+  public void boundedSquaredSumOfErrors() {
+    final MatchMetric metric = MatchMetric.create(MatchMetricType.SSE, image1, image2);
+    final double match = metric.getMatch(image1, image2, pose);
+    
+    Assert.assertEquals(match, metric.getMatch(image1, image2, pose, Double.POSITIVE_INFINITY), 0d);
+    Assert.assertEquals(match, metric.getMatch(image1, image2, pose, match + 1), 0d);
+    Assert.assertFalse(metric.isBetter(metric.getMatch(image1, image2, pose, match / 10), match / 10));
+    Assert.assertEquals(metric.getMatch(image1, image2), metric.getMatch(image1, image2, Double.POSITIVE_INFINITY), 0d);
+  }
+  
+  @Test
+  public void chamferMatching() {
+    final Image square = square(30, 20);
+    final Image movedSquare = square(36, 16);
+    final MatchMetric metric = MatchMetric.create(MatchMetricType.CM, square, movedSquare);
+    final AffineMatrix matching = new Transformations().translate(-6, 4).toMatrix(WIDTH, HEIGHT);
+    
+    Assert.assertEquals(metric.getMatch(square, movedSquare),
+        metric.getMatch(square, movedSquare, AffineMatrix.identity()),
+        1e-9);
+    Assert.assertEquals(0d, metric.getMatch(square, movedSquare, matching), 1e-9);
+    Assert.assertTrue(metric.isBetter(metric.getMatch(square, movedSquare, matching),
+        metric.getMatch(square, movedSquare, pose)));
+    Assert.assertTrue(metric.getMatch(square, movedSquare, pose, 1d) >= 1d);
+  }
+  
+  @Test(expected = IllegalStateException.class)
+  public void chamferMatchingRejectsOtherImages() {
+    final Image square = square(30, 20);
+    final MatchMetric metric = MatchMetric.create(MatchMetricType.CM, square, square(36, 16));
+    metric.getMatch(square, square(40, 10), AffineMatrix.identity());
+  }
+  
+  @Test
+  public void inverseMatrix() {
+    final AffineMatrix inverse = pose.inverse();
+    Assert.assertEquals(12.5, inverse.mapX(pose.mapX(12.5, -7), pose.mapY(12.5, -7)), 1e-9);
+    Assert.assertEquals(-7, inverse.mapY(pose.mapX(12.5, -7), pose.mapY(12.5, -7)), 1e-9);
+  }
+  
+  @Test
+  public void translationMatrix() {
+    final AffineMatrix matrix = new Transformations().translate(5, -2).toMatrix(WIDTH, HEIGHT);
+    Assert.assertEquals(10 - 5, matrix.mapX(10, 20), 1e-12);
+    Assert.assertEquals(20 + 2, matrix.mapY(10, 20), 1e-12);
+  }
+  
+  @Test
+  public void rotationKeepsCenter() {
+    final AffineMatrix matrix = new Transformations().rotate(33).toMatrix(WIDTH, HEIGHT);
+    Assert.assertEquals(WIDTH / 2d, matrix.mapX(WIDTH / 2d, HEIGHT / 2d), 1e-12);
+    Assert.assertEquals(HEIGHT / 2d, matrix.mapY(WIDTH / 2d, HEIGHT / 2d), 1e-12);
+  }
+  
+  private static Image square(final int left, final int top) {
+    final Image image = new Image(WIDTH, HEIGHT);
+    for (int y = top; y < top + 25; y++) {
+      for (int x = left; x < left + 25; x++) {
+        image.set(x, y, 255);
+      }
+    }
+    
+    return image;
+  }
+  
+  private void assertFusedMatchesResampled(final MatchMetric metric) {
+    final Image resampled = image2.transformation().transform(pose, Interpolation.Mode.NearestNeighbour).getResult();
+    Assert.assertEquals(metric.getMatch(image1, resampled), metric.getMatch(image1, image2, pose), 1e-9);
+  }
+  
+}
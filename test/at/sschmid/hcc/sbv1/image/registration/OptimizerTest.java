@@ -0,0 +1,77 @@
+package at.sschmid.hcc.sbv1.image.registration;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class OptimizerTest {
+  
+  private static final double[] START = { 0d, 0d, 0d };
+  private static final double[] STEPS = { 2d, 2d, 1d };
+  
+  // minimum at (3, -2, 1.5), the parameters are coupled
+  private static final Optimizer.Objective QUADRATIC = parameters -> {
+    final double a = parameters[0] - 3d;
+    final double b = parameters[1] + 2d;
+    final double c = parameters[2] - 1.5d;
+    return a * a + 2d * b * b + 3d * c * c + a * b + 10d;
+  };
+  
+  @Test
+  public void nelderMead() {
+    assertMinimum(Optimizer.nelderMead().optimize(QUADRATIC, START, STEPS, 1000, 1e-12));
+  }
+  
+  @Test
+  public void powell() {
+    assertMinimum(Optimizer.powell().optimize(QUADRATIC, START, STEPS, 1000, 1e-12));
+  }
+  
+  @Test
+  public void hillClimber() {
+    assertMinimum(Optimizer.hillClimber().optimize(QUADRATIC, START, STEPS, 1000, 1e-6));
+  }
+  
+  @Test
+  public void maximization() {
+    final Optimizer.Objective negated = new Optimizer.Objective() {
+      
+      @Override
+      public double evaluate(final double[] parameters) {
+        return -QUADRATIC.evaluate(parameters);
+      }
+      
+      @Override
+      public boolean isBetter(final double value, final double bestValue) {
+        return value > bestValue;
+      }
+      
+    };
+    
+    final Optimizer.Result result = Optimizer.nelderMead().optimize(negated, START, STEPS, 1000, 1e-12);
+    Assert.assertEquals(-10d, result.value, 1e-3);
+  }
+  
+  @Test
+  public void evaluationBudget() {
+    for (final Optimizer optimizer : new Optimizer[] {
+        Optimizer.powell(), Optimizer.nelderMead(), Optimizer.hillClimber() }) {
+      final int[] evaluations = new int[1];
+      final Optimizer.Result result = optimizer.optimize(parameters -> {
+        evaluations[0]++;
+        return QUADRATIC.evaluate(parameters);
+      }, START, STEPS, 25, 0d);
+      
+      Assert.assertEquals(25, evaluations[0]);
+      Assert.assertEquals(25, result.evaluations);
+      Assert.assertTrue(result.value < QUADRATIC.evaluate(START));
+    }
+  }
+  
+  private static void assertMinimum(final Optimizer.Result result) {
+    Assert.assertEquals(3d, result.parameters[0], 1e-2);
+    Assert.assertEquals(-2d, result.parameters[1], 1e-2);
+    Assert.assertEquals(1.5d, result.parameters[2], 1e-2);
+    Assert.assertEquals(10d, result.value, 1e-3);
+  }
+  
+}
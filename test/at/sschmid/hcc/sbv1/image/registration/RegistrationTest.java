@@ -0,0 +1,146 @@
+package at.sschmid.hcc.sbv1.image.registration;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.image.resampling.AffineMatrix;
+import at.sschmid.hcc.sbv1.image.resampling.Interpolation;
+import at.sschmid.hcc.sbv1.image.resampling.Transformations;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class RegistrationTest {
+  
+  private static final int SIZE = 128;
+  
+  private Image image;
+  private Image transformedImage;
+  
+  @Before
+  public void setup() {
+    image = new Image(SIZE, SIZE);
+    for (int y = 0; y < SIZE; y++) {
+      for (int x = 0; x < SIZE; x++) {
+        final double blob1 = Math.exp(-(Math.pow(x - 50, 2) + Math.pow(y - 60, 2)) / 300d);
+        final double blob2 = Math.exp(-(Math.pow(x - 85, 2) + Math.pow(y - 40, 2)) / 120d);
+        image.set(x, y, (int) (200 * blob1 + 150 * blob2));
+      }
+    }
+    
+    transformedImage = image.transformation()
+        .transform(new Transformations().translate(6, -4), Interpolation.Mode.BiLinear)
+        .getResult();
+  }
+  
+  @Test
+  public void pyramidRegistration() {
+    final Registration registration = Registration.create()
+        .errorMetric(MatchMetric.create(MatchMetricType.SSE, image, transformedImage))
+        .searchRadiusTranslation(5)
+        .searchRadiusRotation(2)
+        .stepWidthTranslation(4)
+        .stepWidthRotation(1)
+        .maxOptimizationRuns(3)
+        .scalePerRun(0.7)
+        .pyramidLevels(3)
+        .build();
+    
+    final Transformations transformations = registration.register(image, transformedImage);
+    Assert.assertNotNull(transformations);
+    
+    // the registered pose has to move the transformed image back
+    final AffineMatrix matrix = transformations.toMatrix(SIZE, SIZE);
+    Assert.assertEquals(SIZE / 2d + 6, matrix.mapX(SIZE / 2d, SIZE / 2d), 1.5d);
+    Assert.assertEquals(SIZE / 2d - 4, matrix.mapY(SIZE / 2d, SIZE / 2d), 1.5d);
+  }
+  
+  @Test
+  public void coarseLevelsUseWholePixelSteps() {
+    final CountingMetric metric = new CountingMetric(MatchMetric.create(MatchMetricType.SSE, image, transformedImage));
+    final Registration registration = Registration.create()
+        .errorMetric(metric)
+        .searchRadiusTranslation(8)
+        .searchRadiusRotation(1)
+        .stepWidthTranslation(1)
+        .stepWidthRotation(1)
+        .maxOptimizationRuns(1)
+        .scalePerRun(1)
+        .pyramidLevels(3)
+        .build();
+    
+    final Transformations transformations = registration.register(image, transformedImage);
+    Assert.assertNotNull(transformations);
+    
+    final AffineMatrix matrix = transformations.toMatrix(SIZE, SIZE);
+    Assert.assertEquals(SIZE / 2d + 6, matrix.mapX(SIZE / 2d, SIZE / 2d), 1.5d);
+    Assert.assertEquals(SIZE / 2d - 4, matrix.mapY(SIZE / 2d, SIZE / 2d), 1.5d);
+    
+    // a single full resolution run alone tests (2 * 8)² translations per rotation
+    Assert.assertTrue(String.format("%d evaluations", metric.evaluations.get()), metric.evaluations.get() < 16 * 16);
+  }
+  
+  @Test
+  public void optimizerRegistration() {
+    final Registration registration = Registration.create()
+        .errorMetric(MatchMetric.create(MatchMetricType.SSE, image, transformedImage))
+        .searchRadiusTranslation(1)
+        .searchRadiusRotation(1)
+        .stepWidthTranslation(4)
+        .stepWidthRotation(2)
+        .maxOptimizationRuns(1)
+        .scalePerRun(1)
+        .optimizer(Optimizer.nelderMead())
+        .maxEvaluations(300)
+        .build();
+    
+    final Transformations transformations = registration.register(image, transformedImage);
+    Assert.assertNotNull(transformations);
+    
+    final AffineMatrix matrix = transformations.toMatrix(SIZE, SIZE);
+    Assert.assertEquals(SIZE / 2d + 6, matrix.mapX(SIZE / 2d, SIZE / 2d), 1d);
+    Assert.assertEquals(SIZE / 2d - 4, matrix.mapY(SIZE / 2d, SIZE / 2d), 1d);
+  }
+  
+  private static final class CountingMetric implements MatchMetric {
+    
+    private final MatchMetric metric;
+    private final AtomicInteger evaluations = new AtomicInteger();
+    
+    private CountingMetric(final MatchMetric metric) {
+      this.metric = metric;
+    }
+    
+    @Override
+    public void init(final Image image1, final Image image2) {
+      metric.init(image1, image2);
+    }
+    
+    @Override
+    public boolean isBetter(final double match, final double bestMatch) {
+      return metric.isBetter(match, bestMatch);
+    }
+    
+    @Override
+    public double getMatch(final Image image1, final Image image2) {
+      return metric.getMatch(image1, image2);
+    }
+    
+    @Override
+    public double getMatch(final Image image1, final Image image2, final AffineMatrix pose) {
+      evaluations.incrementAndGet();
+      return metric.getMatch(image1, image2, pose);
+    }
+    
+    @Override
+    public double getMatch(final Image image1,
+                           final Image image2,
+                           final AffineMatrix pose,
+                           final double bestSoFar) {
+      evaluations.incrementAndGet();
+      return metric.getMatch(image1, image2, pose, bestSoFar);
+    }
+    
+  }
+  
+}
@@ -0,0 +1,135 @@
+package at.sschmid.hcc.sbv1.image.resampling;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public final class TransformationTest {
+  
+  private static final int WIDTH = 40;
+  private static final int HEIGHT = 30;
+  
+  private Image image;
+  
+  @Before
+  public void setup() {
+    final Random random = new Random(11);
+    image = new Image(WIDTH, HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        image.set(x, y, random.nextInt(256));
+      }
+    }
+  }
+  
+  @Test
+  public void translationIsExact() {
+    final Image result = image.transformation()
+        .transform(new Transformations().translate(3, -2), Interpolation.Mode.BiLinear)
+        .getResult();
+    
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        final int sourceX = x - 3;
+        final int sourceY = y + 2;
+        final int expected = sourceX >= 0 && sourceX < WIDTH && sourceY >= 0 && sourceY < HEIGHT
+            ? image.get(sourceX, sourceY)
+            : 0;
+        Assert.assertEquals(expected, result.get(x, y));
+      }
+    }
+  }
+  
+  @Test
+  public void composedTransformationsResampleOnce() {
+    final Image composed = image.transformation()
+        .transform(new Transformations().translate(4.5, 1).rotate(20).translate(-4.5, -1),
+            Interpolation.Mode.NearestNeighbour)
+        .getResult();
+    
+    // moving the image, rotating it around its center and moving it back rotates around the shifted center
+    final double radians = Math.toRadians(20);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        final double[] source = rotateBack(x, y, radians, WIDTH / 2d - 4.5, HEIGHT / 2d - 1);
+        assertNearestNeighbour(image, source[0], source[1], composed.get(x, y));
+      }
+    }
+  }
+  
+  @Test
+  public void rotationAfterScaleUsesScaledCenter() {
+    final Image composed = image.transformation()
+        .transform(new Transformations().scale(2).rotate(30), Interpolation.Mode.NearestNeighbour)
+        .getResult();
+    Assert.assertEquals(2 * WIDTH, composed.width);
+    Assert.assertEquals(2 * HEIGHT, composed.height);
+    
+    // the scale maps the corners onto the corners, so its factor is (2 * size - 1) / (size - 1)
+    final double factorX = (2d * WIDTH - 1) / (WIDTH - 1);
+    final double factorY = (2d * HEIGHT - 1) / (HEIGHT - 1);
+    final double radians = Math.toRadians(30);
+    for (int y = 0; y < composed.height; y++) {
+      for (int x = 0; x < composed.width; x++) {
+        final double[] scaled = rotateBack(x, y, radians, WIDTH, HEIGHT);
+        assertNearestNeighbour(image, scaled[0] / factorX, scaled[1] / factorY, composed.get(x, y));
+      }
+    }
+  }
+  
+  @Test
+  public void scaleChangesSize() {
+    final Image result = image.transformation()
+        .transform(new Transformations().scale(2), Interpolation.Mode.BiLinear)
+        .getResult();
+    
+    Assert.assertEquals(2 * WIDTH, result.width);
+    Assert.assertEquals(2 * HEIGHT, result.height);
+    Assert.assertEquals(image.get(0, 0), result.get(0, 0));
+    Assert.assertEquals(image.get(WIDTH - 1, HEIGHT - 1), result.get(2 * WIDTH - 1, 2 * HEIGHT - 1));
+  }
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidScale() {
+    new Transformations().scale(20);
+  }
+  
+  /**
+   * @return the source position of (x, y) in an image rotated by radians around (centerX, centerY)
+   */
+  private static double[] rotateBack(final int x,
+                                     final int y,
+                                     final double radians,
+                                     final double centerX,
+                                     final double centerY) {
+    final double dx = x - centerX;
+    final double dy = y - centerY;
+    return new double[] {
+        centerX + dx * Math.cos(radians) + dy * Math.sin(radians),
+        centerY - dx * Math.sin(radians) + dy * Math.cos(radians) };
+  }
+  
+  /**
+   * Positions within rounding errors of the middle between two pixels may end up at either of them and are skipped.
+   */
+  private static void assertNearestNeighbour(final Image source, final double x, final double y, final int actual) {
+    if (isAmbiguous(x) || isAmbiguous(y)) {
+      return;
+    }
+    
+    // rounded like Interpolation, which truncates towards 0 and thus maps (-1.5; -0.5) onto the first pixel as well
+    final int px = (int) (x + 0.5);
+    final int py = (int) (y + 0.5);
+    final int expected = px >= 0 && px < source.width && py >= 0 && py < source.height ? source.get(px, py) : 0;
+    Assert.assertEquals(String.format("source %.3f/%.3f", x, y), expected, actual);
+  }
+  
+  private static boolean isAmbiguous(final double position) {
+    final double fraction = position + 0.5 - Math.floor(position + 0.5);
+    return fraction < 1e-6 || fraction > 1 - 1e-6;
+  }
+  
+}
@@ -0,0 +1,81 @@
+package at.sschmid.hcc.sbv1.image.segmentation;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.utility.Point;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public final class BinaryImageTest {
+  
+  // not a multiple of the word size, so the padding bits are covered
+  private static final int WIDTH = 131;
+  private static final int HEIGHT = 47;
+  
+  private Image image;
+  private BinaryImage binary;
+  
+  @Before
+  public void setup() {
+    final Random random = new Random(29);
+    image = new Image(WIDTH, HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        image.set(x, y, random.nextInt(100) < 75 ? 255 : 0);
+      }
+    }
+    
+    binary = BinaryImage.of(image);
+  }
+  
+  @Test
+  public void roundTrip() {
+    assertImageEquals(image, binary.toImage());
+  }
+  
+  @Test
+  public void logicalOperations() {
+    final BinaryImage eroded = binary.erosion(Neighbour.N4);
+    Assert.assertEquals(binary.count(), binary.or(eroded).count());
+    Assert.assertEquals(eroded.count(), binary.and(eroded).count());
+    Assert.assertEquals(binary.count() - eroded.count(), binary.xor(eroded).count());
+    Assert.assertEquals(WIDTH * HEIGHT - binary.count(), binary.not().count());
+  }
+  
+  @Test
+  public void morphology() {
+    for (final Neighbour neighbour : Neighbour.values()) {
+      assertImageEquals(image.segmentation().erosion(neighbour), binary.erosion(neighbour).toImage());
+      assertImageEquals(image.segmentation().dilation(neighbour), binary.dilation(neighbour).toImage());
+    }
+  }
+  
+  @Test
+  public void hitOrMiss() {
+    final int[][] structure = {
+        { 0, 1, 0 },
+        { 1, 1, 0 },
+        { 0, 1, 1 }
+    };
+    
+    final Image expected = new Image(WIDTH, HEIGHT);
+    for (final Point point : image.segmentation().hitOrMissPoints(structure)) {
+      expected.set(point.x, point.y, 255);
+    }
+    
+    final BinaryImage hits = binary.hitOrMiss(structure);
+    Assert.assertTrue(hits.count() > 0);
+    assertImageEquals(expected, hits.toImage());
+  }
+  
+  private static void assertImageEquals(final Image expected, final Image actual) {
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        Assert.assertEquals(String.format("(%d, %d)", x, y), expected.get(x, y), actual.get(x, y));
+      }
+    }
+  }
+  
+}
@@ -0,0 +1,102 @@
+package at.sschmid.hcc.sbv1.image.segmentation;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+public final class ConnectedComponentsTest {
+  
+  private static final BinaryThreshold THRESHOLD = new BinaryThreshold(128, 0, 255);
+  
+  @Test
+  public void diagonalNeighbours() {
+    final int[][] imageData = {
+        { 255, 0, 0 },
+        { 0, 255, 0 },
+        { 0, 0, 255 },
+        { 255, 255, 0 }
+    };
+    final Image image = new Image(imageData, 4, 3);
+    
+    final ConnectedComponents n4 = image.segmentation().connectedComponents(Neighbour.N4, THRESHOLD);
+    Assert.assertEquals(4, n4.count());
+    
+    final ConnectedComponents n8 = image.segmentation().connectedComponents(Neighbour.N8, THRESHOLD);
+    Assert.assertEquals(1, n8.count());
+    final ConnectedComponents.Region region = n8.region(1);
+    Assert.assertEquals(5, region.area);
+    Assert.assertEquals(0, region.minX);
+    Assert.assertEquals(3, region.maxX);
+    Assert.assertEquals(0, region.minY);
+    Assert.assertEquals(2, region.maxY);
+    Assert.assertEquals((0 + 1 + 2 + 3 + 3) / 5d, region.centroidX, 1e-12);
+    Assert.assertEquals((0 + 1 + 2 + 0 + 1) / 5d, region.centroidY, 1e-12);
+  }
+  
+  @Test
+  public void matchesFloodFill() {
+    // taller than a row band, so regions are merged across band borders
+    final int width = 97;
+    final int height = 211;
+    final Random random = new Random(11);
+    final Image image = new Image(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.set(x, y, random.nextInt(100) < 55 ? 255 : 0);
+      }
+    }
+    
+    for (final Neighbour neighbour : new Neighbour[] { Neighbour.N4, Neighbour.N8 }) {
+      final ConnectedComponents components = image.segmentation().connectedComponents(neighbour, THRESHOLD);
+      final int[] expected = floodFillLabels(image, neighbour == Neighbour.N8);
+      Assert.assertArrayEquals(expected, components.labels());
+    }
+  }
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void unsupportedNeighbour() {
+    new Image(3, 3).segmentation().connectedComponents(Neighbour.N36, THRESHOLD);
+  }
+  
+  private static int[] floodFillLabels(final Image image, final boolean n8) {
+    final int[] labels = new int[image.size];
+    final Deque<int[]> stack = new ArrayDeque<>();
+    int label = 0;
+    for (int y = 0; y < image.height; y++) {
+      for (int x = 0; x < image.width; x++) {
+        if (image.get(x, y) < 128 || labels[y * image.width + x] != 0) {
+          continue;
+        }
+        
+        label++;
+        labels[y * image.width + x] = label;
+        stack.push(new int[] { x, y });
+        while (!stack.isEmpty()) {
+          final int[] point = stack.pop();
+          for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+              if ((dx == 0 && dy == 0) || (!n8 && dx != 0 && dy != 0)) {
+                continue;
+              }
+              
+              final int nx = point[0] + dx;
+              final int ny = point[1] + dy;
+              if (nx >= 0 && nx < image.width && ny >= 0 && ny < image.height
+                  && image.get(nx, ny) >= 128 && labels[ny * image.width + nx] == 0) {
+                labels[ny * image.width + nx] = label;
+                stack.push(new int[] { nx, ny });
+              }
+            }
+          }
+        }
+      }
+    }
+    
+    return labels;
+  }
+  
+}
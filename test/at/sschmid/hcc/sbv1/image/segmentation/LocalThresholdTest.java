@@ -0,0 +1,122 @@
+package at.sschmid.hcc.sbv1.image.segmentation;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public final class LocalThresholdTest {
+  
+  private static final int WIDTH = 100;
+  private static final int HEIGHT = 70;
+  
+  private Image image;
+  private Image text;
+  
+  @Before
+  public void setup() {
+    // background brightening from 40 on the left to 200 on the right, "text" is 60 brighter than its background
+    final Random random = new Random(17);
+    image = new Image(WIDTH, HEIGHT);
+    text = new Image(WIDTH, HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        final boolean isText = x % 10 < 2 && y % 14 < 9;
+        final double background = 40 + 160d * x / WIDTH;
+        final double value = background + (isText ? 60 : 0) + random.nextGaussian() * 4;
+        image.set(x, y, (int) Math.max(0, Math.min(255, value)));
+        text.set(x, y, isText ? 255 : 0);
+      }
+    }
+  }
+  
+  @Test
+  public void segmentsMatchSegmentMasks() {
+    for (final ThresholdMethod method : ThresholdMethod.values()) {
+      for (final int[] size : new int[][] { { 21, 21 }, { 9, 15 }, { 51, 35 } }) {
+        final Image expected = segmentMasks(size[0], size[1], method);
+        final Image actual = image.localThreshold().segments(size[0], size[1], method);
+        assertEquals(String.format("%s %dx%d", method, size[0], size[1]), expected, actual);
+      }
+    }
+  }
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void evenSegmentSize() {
+    image.localThreshold().segments(20, 21, ThresholdMethod.Otsu);
+  }
+  
+  @Test
+  public void tilesInterpolated() {
+    assertFindsText(image.localThreshold().tilesInterpolated(20, 14, ThresholdMethod.Otsu));
+  }
+  
+  @Test
+  public void tilesInterpolatedOfUniformTiles() {
+    final Image uniform = new Image(WIDTH, HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        uniform.set(x, y, 100);
+      }
+    }
+    
+    final Image mask = uniform.localThreshold().tilesInterpolated(32, 32, ThresholdMethod.Mean);
+    Assert.assertEquals(WIDTH * HEIGHT, mask.histogram().getData()[255]);
+  }
+  
+  @Test
+  public void niblack() {
+    assertFindsText(image.localThreshold().niblack(7, LocalThreshold.DEFAULT_NIBLACK_K));
+  }
+  
+  @Test
+  public void sauvola() {
+    // the contrast of the text is low compared to the range, the default k would lose it on the dark side
+    assertFindsText(image.localThreshold().sauvola(7, 0.2d, LocalThreshold.DEFAULT_SAUVOLA_RANGE));
+  }
+  
+  /**
+   * The former implementation of {@link OptimalThreshold#localMask(int, int)}.
+   */
+  private Image segmentMasks(final int segmentWidth, final int segmentHeight, final ThresholdMethod method) {
+    Image mask = new Image(image.width, image.height);
+    for (final Segment segment : image.getSegments(segmentWidth, segmentHeight)) {
+      final int threshold = method.threshold(segment.getSegmentImage().histogram().getData());
+      if (threshold == 0) {
+        // the masked image would be foreground everywhere, only the segment itself is
+        mask = mask.calculation(segment.mask()).or();
+        continue;
+      }
+      
+      final BinaryThreshold binaryThreshold = new BinaryThreshold(threshold, 0, image.maxColor);
+      final Image sectionInImage = image.calculation(segment.mask()).and();
+      mask = mask.calculation(sectionInImage.binary(binaryThreshold)).or();
+    }
+    
+    return mask;
+  }
+  
+  private void assertFindsText(final Image mask) {
+    int wrong = 0;
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        if (mask.get(x, y) != text.get(x, y)) {
+          wrong++;
+        }
+      }
+    }
+    
+    Assert.assertTrue(String.format("%d wrong pixels", wrong), wrong < WIDTH * HEIGHT / 50);
+  }
+  
+  private static void assertEquals(final String message, final Image expected, final Image actual) {
+    for (int y = 0; y < expected.height; y++) {
+      for (int x = 0; x < expected.width; x++) {
+        Assert.assertEquals(String.format("%s at %d/%d", message, x, y), expected.get(x, y), actual.get(x, y));
+      }
+    }
+  }
+  
+}
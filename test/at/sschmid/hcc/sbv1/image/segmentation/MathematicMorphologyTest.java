@@ -0,0 +1,152 @@
+package at.sschmid.hcc.sbv1.image.segmentation;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public final class MathematicMorphologyTest {
+  
+  private static final int WIDTH = 75;
+  private static final int HEIGHT = 58;
+  private static final int[][] IRREGULAR = {
+      { 1, 0, 0 },
+      { 0, 1, 1 },
+      { 0, 1, 0 }
+  };
+  
+  private Image image;
+  
+  @Before
+  public void setup() {
+    final Random random = new Random(23);
+    image = new Image(WIDTH, HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        image.set(x, y, random.nextInt(100) < 70 ? 255 : 0);
+      }
+    }
+  }
+  
+  @Test
+  public void neighboursAreSeparable() {
+    for (final Neighbour neighbour : Neighbour.values()) {
+      Assert.assertNotNull(neighbour.toString(), SeparableMorphology.decompose(neighbour.value));
+    }
+    
+    Assert.assertNull(SeparableMorphology.decompose(IRREGULAR));
+  }
+  
+  @Test
+  public void erosion() {
+    for (final Neighbour neighbour : Neighbour.values()) {
+      assertImageEquals(bruteForce(neighbour.value, true), image.segmentation().erosion(neighbour));
+    }
+    
+    assertImageEquals(bruteForce(IRREGULAR, true), new MathematicMorphology(IRREGULAR).erosion(image));
+  }
+  
+  @Test
+  public void dilation() {
+    for (final Neighbour neighbour : Neighbour.values()) {
+      assertImageEquals(bruteForce(neighbour.value, false), image.segmentation().dilation(neighbour));
+    }
+    
+    assertImageEquals(bruteForce(IRREGULAR, false), new MathematicMorphology(IRREGULAR).dilation(image));
+  }
+  
+  @Test
+  public void hitOrMiss() {
+    final int[][] frame = new int[7][5];
+    for (int x = 0; x < 7; x++) {
+      for (int y = 0; y < 5; y++) {
+        frame[x][y] = x == 0 || x == 6 || y == 0 || y == 4 ? 0 : 1;
+      }
+    }
+    
+    final int[][] mixed = {
+        { 1, -1, 0 },
+        { 0, 1, 1 },
+        { -1, 1, 0 }
+    };
+    
+    int total = 0;
+    for (final int[][] structure : new int[][][] { frame, mixed, IRREGULAR }) {
+      for (final double quality : new double[] { 0.5, 0.7, 0.9 }) {
+        final Hits hits = new MathematicMorphology(structure).hitOrMiss(image, quality);
+        final Image expected = bruteForceHitOrMiss(structure, quality);
+        total += hits.count();
+        assertImageEquals(expected, hits.toImage(image.maxColor));
+        for (int i = 1; i < hits.count(); i++) {
+          // column-major order of a sequential scan
+          Assert.assertTrue(hits.x(i - 1) < hits.x(i) || (hits.x(i - 1) == hits.x(i) && hits.y(i - 1) < hits.y(i)));
+        }
+      }
+    }
+    
+    Assert.assertTrue(total > 0);
+  }
+  
+  private Image bruteForceHitOrMiss(final int[][] structure, final double quality) {
+    final int rx = (structure.length - 1) / 2;
+    final int ry = (structure[0].length - 1) / 2;
+    final double structureSize = structure.length * structure[0].length;
+    final Image result = new Image(WIDTH, HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        int matching = 0;
+        for (int dx = -rx; dx <= rx; dx++) {
+          for (int dy = -ry; dy <= ry; dy++) {
+            final int k = x + dx;
+            final int l = y + dy;
+            final int s = structure[dx + rx][dy + ry];
+            if (k >= 0 && k < WIDTH && l >= 0 && l < HEIGHT
+                && ((s == 1 && image.get(k, l) == image.maxColor) || (s == 0 && image.get(k, l) == 0))) {
+              matching++;
+            }
+          }
+        }
+        
+        result.set(x, y, matching / structureSize >= quality ? image.maxColor : 0);
+      }
+    }
+    
+    return result;
+  }
+  
+  private Image bruteForce(final int[][] structure, final boolean erosion) {
+    final int rx = (structure.length - 1) / 2;
+    final int ry = (structure[0].length - 1) / 2;
+    final Image result = new Image(WIDTH, HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        boolean value = erosion;
+        for (int dx = -rx; dx <= rx; dx++) {
+          for (int dy = -ry; dy <= ry; dy++) {
+            final int k = x + dx;
+            final int l = y + dy;
+            if (structure[dx + rx][dy + ry] == 1 && k >= 0 && k < WIDTH && l >= 0 && l < HEIGHT) {
+              final boolean foreground = image.get(k, l) == image.maxColor;
+              value = erosion ? value && foreground : value || foreground;
+            }
+          }
+        }
+        
+        result.set(x, y, value ? image.maxColor : 0);
+      }
+    }
+    
+    return result;
+  }
+  
+  private static void assertImageEquals(final Image expected, final Image actual) {
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        Assert.assertEquals(String.format("(%d, %d)", x, y), expected.get(x, y), actual.get(x, y));
+      }
+    }
+  }
+  
+}
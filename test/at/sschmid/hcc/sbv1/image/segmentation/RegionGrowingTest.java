@@ -0,0 +1,116 @@
+package at.sschmid.hcc.sbv1.image.segmentation;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import at.sschmid.hcc.sbv1.utility.Point;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public final class RegionGrowingTest {
+  
+  private static final int WIDTH = 120;
+  private static final int HEIGHT = 90;
+  private static final BinaryThreshold THRESHOLD = new BinaryThreshold(100, 200, 0, 255);
+  
+  private Image image;
+  private List<Point> seeds;
+  
+  @Before
+  public void setup() {
+    final Random random = new Random(17);
+    image = new Image(WIDTH, HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        image.set(x, y, random.nextInt(100) < 60 ? 100 + random.nextInt(101) : random.nextInt(100));
+      }
+    }
+    
+    seeds = new ArrayList<>();
+    for (int i = 0; i < 12; i++) {
+      seeds.add(new Point(random.nextInt(WIDTH), random.nextInt(HEIGHT)));
+    }
+  }
+  
+  @Test
+  public void regionGrowingN4() {
+    assertGrowsConnectedComponents(Neighbour.N4);
+  }
+  
+  @Test
+  public void regionGrowingN8() {
+    assertGrowsConnectedComponents(Neighbour.N8);
+  }
+  
+  @Test
+  public void regionLabelling() {
+    // sparse enough for many N8 components, several of them only connected diagonally
+    final Random random = new Random(23);
+    final Image sparse = new Image(WIDTH, HEIGHT);
+    final List<Point> foreground = new ArrayList<>();
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        final boolean isForeground = random.nextInt(100) < 35 && (x > 0 || y > 0);
+        sparse.set(x, y, isForeground ? 100 + random.nextInt(101) : random.nextInt(100));
+        if (isForeground) {
+          foreground.add(new Point(x, y));
+        }
+      }
+    }
+    
+    final List<Point> labellingSeeds = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      labellingSeeds.add(foreground.get(random.nextInt(foreground.size())));
+    }
+    
+    labellingSeeds.add(new Point(0, 0)); // a background seed is ignored
+    final ConnectedComponents components = sparse.segmentation().connectedComponents(Neighbour.N8, THRESHOLD);
+    Assert.assertTrue(sparse.segmentation().connectedComponents(Neighbour.N4, THRESHOLD).count() > components.count());
+    
+    // every seed in a component without a region id yet assigns the next id, starting at 255 and counting down
+    final Map<Integer, Integer> regionIds = new HashMap<>();
+    int regionId = 255;
+    for (final Point seed : labellingSeeds) {
+      final int label = components.label(seed.x, seed.y);
+      if (label != 0 && !regionIds.containsKey(label)) {
+        regionIds.put(label, regionId--);
+      }
+    }
+    
+    Assert.assertTrue(regionIds.size() > 10);
+    final Image result = sparse.segmentation().regionLabelling(labellingSeeds, Neighbour.N8, THRESHOLD);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        final Integer expected = regionIds.get(components.label(x, y));
+        Assert.assertEquals(String.format("%d/%d", x, y),
+            expected != null ? expected : THRESHOLD.background,
+            result.get(x, y));
+      }
+    }
+  }
+  
+  private void assertGrowsConnectedComponents(final Neighbour neighbour) {
+    final Image result = image.segmentation().regionGrowing(seeds, neighbour, THRESHOLD);
+    final ConnectedComponents components = image.segmentation().connectedComponents(neighbour, THRESHOLD);
+    final Set<Integer> seedLabels = new HashSet<>();
+    for (final Point seed : seeds) {
+      seedLabels.add(components.label(seed.x, seed.y));
+    }
+    
+    seedLabels.remove(0);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        final int expected = seedLabels.contains(components.label(x, y)) ? THRESHOLD.foreground : THRESHOLD.background;
+        Assert.assertEquals(expected, result.get(x, y));
+      }
+    }
+  }
+  
+}
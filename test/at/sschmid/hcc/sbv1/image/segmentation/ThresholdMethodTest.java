@@ -0,0 +1,125 @@
+package at.sschmid.hcc.sbv1.image.segmentation;
+
+import at.sschmid.hcc.sbv1.image.Image;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public final class ThresholdMethodTest {
+  
+  private static final int WIDTH = 64;
+  private static final int HEIGHT = 48;
+  
+  private Image image;
+  private int[] histogram;
+  
+  @Before
+  public void setup() {
+    // dark background around 60, fewer bright objects around 180
+    final Random random = new Random(31);
+    image = new Image(WIDTH, HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        final double mean = random.nextInt(100) < 70 ? 60 : 180;
+        image.set(x, y, (int) Math.max(0, Math.min(255, mean + random.nextGaussian() * 15)));
+      }
+    }
+    
+    histogram = image.histogram().getData();
+  }
+  
+  @Test
+  public void bimodal() {
+    for (final ThresholdMethod method : new ThresholdMethod[] {
+        ThresholdMethod.Isodata, ThresholdMethod.Otsu, ThresholdMethod.Kapur, ThresholdMethod.Triangle }) {
+      final int threshold = method.threshold(histogram);
+      Assert.assertTrue(String.format("%s: %d", method, threshold), threshold > 70 && threshold < 170);
+    }
+  }
+  
+  @Test
+  public void mean() {
+    Assert.assertEquals((int) (image.histogram().getAverageColor() + 0.5), ThresholdMethod.Mean.threshold(histogram));
+  }
+  
+  @Test
+  public void isodataMatchesPixelIteration() {
+    double threshold = image.histogram().getAverageColor();
+    while (true) {
+      double bgSum = 0d;
+      int bgCount = 0;
+      double fgSum = 0d;
+      int fgCount = 0;
+      for (int y = 0; y < HEIGHT; y++) {
+        for (int x = 0; x < WIDTH; x++) {
+          final int color = image.get(x, y);
+          if (color < threshold) {
+            bgSum += color;
+            bgCount++;
+          } else {
+            fgSum += color;
+            fgCount++;
+          }
+        }
+      }
+      
+      final double next = ((bgCount > 0 ? bgSum / bgCount : 0) + (fgCount > 0 ? fgSum / fgCount : 0)) / 2d;
+      if (next == threshold) {
+        break;
+      }
+      
+      threshold = next;
+    }
+    
+    Assert.assertEquals((int) (threshold + 0.5d), ThresholdMethod.Isodata.threshold(histogram));
+    Assert.assertEquals((int) (threshold + 0.5d), image.histogram().optimalThreshold(2).globalValue());
+  }
+  
+  @Test
+  public void otsuMaximizesBetweenClassVariance() {
+    final int threshold = ThresholdMethod.Otsu.threshold(histogram);
+    final double best = betweenClassVariance(threshold);
+    for (int t = 1; t < histogram.length; t++) {
+      Assert.assertTrue(betweenClassVariance(t) <= best);
+    }
+  }
+  
+  @Test
+  public void singleColor() {
+    final int[] single = new int[256];
+    single[42] = 100;
+    for (final ThresholdMethod method : new ThresholdMethod[] {
+        ThresholdMethod.Mean, ThresholdMethod.Otsu, ThresholdMethod.Kapur, ThresholdMethod.Triangle }) {
+      Assert.assertEquals(method.toString(), 42, method.threshold(single));
+    }
+  }
+  
+  private double betweenClassVariance(final int threshold) {
+    double count0 = 0;
+    double sum0 = 0;
+    double count1 = 0;
+    double sum1 = 0;
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        final int color = image.get(x, y);
+        if (color < threshold) {
+          count0++;
+          sum0 += color;
+        } else {
+          count1++;
+          sum1 += color;
+        }
+      }
+    }
+    
+    if (count0 == 0 || count1 == 0) {
+      return 0;
+    }
+    
+    final double difference = sum0 / count0 - sum1 / count1;
+    return count0 * count1 * difference * difference;
+  }
+  
+}
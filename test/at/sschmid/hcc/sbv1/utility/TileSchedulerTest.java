@@ -0,0 +1,76 @@
+package at.sschmid.hcc.sbv1.utility;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public final class TileSchedulerTest {
+  
+  private static final int WIDTH = 103;
+  private static final int HEIGHT = 67;
+  
+  @Test
+  public void everyPixelIsProcessedOnce() {
+    final AtomicIntegerArray visits = new AtomicIntegerArray(WIDTH * HEIGHT);
+    TileScheduler.create(16, 8).forEachTile(WIDTH, HEIGHT, (x0, y0, x1, y1) -> {
+      for (int y = y0; y < y1; y++) {
+        for (int x = x0; x < x1; x++) {
+          visits.incrementAndGet(y * WIDTH + x);
+        }
+      }
+    });
+    
+    for (int i = 0; i < visits.length(); i++) {
+      Assert.assertEquals(1, visits.get(i));
+    }
+  }
+  
+  @Test
+  public void everyRowIsProcessedOnce() {
+    final AtomicIntegerArray visits = new AtomicIntegerArray(HEIGHT);
+    TileScheduler.create(1, 5).forEachRows(HEIGHT, (yStart, yEnd) -> {
+      for (int y = yStart; y < yEnd; y++) {
+        visits.incrementAndGet(y);
+      }
+    });
+    
+    for (int i = 0; i < visits.length(); i++) {
+      Assert.assertEquals(1, visits.get(i));
+    }
+  }
+  
+  @Test
+  public void sumTiles() {
+    final double sum = TileScheduler.create(10, 10)
+        .sumTiles(WIDTH, HEIGHT, (x0, y0, x1, y1) -> (x1 - x0) * (y1 - y0));
+    Assert.assertEquals(WIDTH * HEIGHT, sum, 0d);
+  }
+  
+  @Test
+  public void nestedCalls() {
+    final TileScheduler scheduler = TileScheduler.create(8, 8);
+    final double sum = scheduler.sumTiles(32, 32, (x0, y0, x1, y1) ->
+        scheduler.sumTiles(x1 - x0, y1 - y0, (a0, b0, a1, b1) -> (a1 - a0) * (b1 - b0)));
+    Assert.assertEquals(32 * 32, sum, 0d);
+  }
+  
+  @Test
+  public void emptyArea() {
+    TileScheduler.shared().forEachTile(0, HEIGHT, (x0, y0, x1, y1) -> Assert.fail());
+    Assert.assertEquals(0d, TileScheduler.shared().sumTiles(WIDTH, 0, (x0, y0, x1, y1) -> 1d), 0d);
+  }
+  
+  @Test(expected = IllegalStateException.class)
+  public void exceptionsArePropagated() {
+    TileScheduler.create(4, 4).forEachTile(WIDTH, HEIGHT, (x0, y0, x1, y1) -> {
+      throw new IllegalStateException("tile failed");
+    });
+  }
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidTileSize() {
+    TileScheduler.create(0, 8);
+  }
+  
+}
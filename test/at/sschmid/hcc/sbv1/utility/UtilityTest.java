@@ -0,0 +1,43 @@
+package at.sschmid.hcc.sbv1.utility;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public final class UtilityTest {
+  
+  @Test
+  public void invokeAllReturnsResultsInOrder() {
+    final List<Callable<Integer>> tasks = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      final int value = i;
+      tasks.add(() -> value * value);
+    }
+    
+    final List<Integer> results = Utility.invokeAll(tasks);
+    Assert.assertEquals(tasks.size(), results.size());
+    for (int i = 0; i < results.size(); i++) {
+      Assert.assertEquals(i * i, (int) results.get(i));
+    }
+  }
+  
+  @Test(expected = IllegalStateException.class)
+  public void invokeAllRethrowsFailures() {
+    final List<Callable<Integer>> tasks = Arrays.asList(() -> 1, () -> {
+      throw new IllegalStateException("failed");
+    });
+    Utility.invokeAll(tasks);
+  }
+  
+  @Test
+  public void joinWaitsForCompletion() {
+    final int[] counter = new int[1];
+    Utility.executeAndJoin(Utility.threadPool(1), Arrays.asList(() -> counter[0]++, () -> counter[0]++));
+    Assert.assertEquals(2, counter[0]);
+  }
+  
+}